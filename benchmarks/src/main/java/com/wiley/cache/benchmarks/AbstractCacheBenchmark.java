@@ -0,0 +1,85 @@
+package com.wiley.cache.benchmarks;
+
+import com.wiley.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of reads, writes and a 90/10 read/write mix of the cache created by the subclass.
+ * The cache is filled with the whole key space before measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractCacheBenchmark {
+
+    static final int KEYS = 1 << 14;
+    static final int SEQUENCE = 1 << 16;
+
+    @Param({"uniform", "zipfian"})
+    public String distribution;
+
+    @Param({"64", "1024"})
+    public int valueSize;
+
+    private Cache<Integer, byte[]> cache;
+    private Integer[] keys;
+    private byte[] value;
+
+    @Setup
+    public void setUp() {
+        cache = createCache();
+        keys = Keys.generate(distribution, KEYS, SEQUENCE, 42);
+        value = new byte[valueSize];
+        for (int i = 0; i < KEYS; i++) {
+            cache.put(i, value);
+        }
+    }
+
+    /**
+     * Creates the measured cache for a key space of {@link #KEYS} keys.
+     */
+    protected abstract Cache<Integer, byte[]> createCache();
+
+    @TearDown
+    public void tearDown() throws IOException {
+        cache.clear();
+        if (cache instanceof Closeable) {
+            ((Closeable) cache).close();
+        }
+    }
+
+    @Benchmark
+    public byte[] get(Cursor cursor) {
+        return cache.get(keys[cursor.next()]);
+    }
+
+    @Benchmark
+    public byte[] put(Cursor cursor) {
+        return cache.put(keys[cursor.next()], value);
+    }
+
+    @Benchmark
+    public byte[] mixed(Cursor cursor) {
+        Integer key = keys[cursor.next()];
+        return cursor.isWrite() ? cache.put(key, value) : cache.get(key);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] getContended(Cursor cursor) {
+        return get(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] mixedContended(Cursor cursor) {
+        return mixed(cursor);
+    }
+}
@@ -0,0 +1,26 @@
+package com.wiley.cache.benchmarks;
+
+import com.wiley.cache.Cache;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Workloads of the caches which evict with a strategy, for every strategy. Memory caches hold half
+ * of the key space so writes evict, the memory tier of the multi-level cache holds a quarter.
+ * <p>
+ * The default parameters make a long run, narrow them on the command line, e.g.
+ * {@code java -jar target/benchmarks.jar CacheBenchmark.mixed -p cacheType=memory,concurrent,sharded -p valueSize=64 -t 4}.
+ */
+public class CacheBenchmark extends AbstractCacheBenchmark {
+
+    @Param({"memory", "concurrent", "multilevel", "sharded"})
+    public String cacheType;
+
+    @Param({"lru", "linked-lru", "tinylfu", "random"})
+    public String strategy;
+
+    @Override
+    protected Cache<Integer, byte[]> createCache() {
+        int capacity = "multilevel".equals(cacheType) ? KEYS / 4 : KEYS / 2;
+        return Caches.create(cacheType, strategy, capacity, KEYS);
+    }
+}
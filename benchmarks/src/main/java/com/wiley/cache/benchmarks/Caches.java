@@ -0,0 +1,96 @@
+package com.wiley.cache.benchmarks;
+
+import com.wiley.cache.Cache;
+import com.wiley.cache.ShardFactory;
+import com.wiley.cache.impl.*;
+import com.wiley.cache.strategies.*;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Creates the caches and strategies named by the benchmark parameters.
+ */
+final class Caches {
+
+    private static final int SHARDS = 4;
+
+    private Caches() {
+    }
+
+    static Strategy strategy(String name) {
+        switch (name) {
+            case "lru":
+                return new LastRecentlyUsedStrategy();
+            case "linked-lru":
+                return new LinkedLastRecentlyUsedStrategy();
+            case "tinylfu":
+                return new WindowTinyLfuStrategy();
+            case "random":
+                return new RandomStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + name);
+        }
+    }
+
+    /**
+     * Creates a cache of the given type holding {@code capacity} entries which evicts with the strategy.
+     * The strategy of a multi-level cache decides which entries stay in its memory tier, its file tier holds
+     * {@code keys} entries. A sharded cache splits the capacity among memory caches with a strategy each.
+     */
+    static Cache<Integer, byte[]> create(String type, String strategy, int capacity, int keys) {
+        Properties properties = new Properties();
+        switch (type) {
+            case "memory":
+                properties.setProperty(MemoryCache.LIMIT, String.valueOf(capacity));
+                return new MemoryCache<>(properties, strategy(strategy));
+            case "concurrent":
+                properties.setProperty(MemoryCache.LIMIT, String.valueOf(capacity));
+                return new ConcurrentMemoryCache<>(properties, strategy(strategy));
+            case "sharded":
+                properties.setProperty(MemoryCache.LIMIT, String.valueOf(capacity));
+                properties.setProperty(ShardedCache.SHARDS, String.valueOf(SHARDS));
+                final String shardStrategy = strategy;
+                return new ShardedCache<>(properties, new ShardFactory<Integer, byte[]>() {
+                    @Override
+                    public Cache<Integer, byte[]> create(int shard, Properties properties) {
+                        return new MemoryCache<>(properties, strategy(shardStrategy));
+                    }
+                });
+            case "multilevel":
+                properties.setProperty(MemoryCache.LIMIT, String.valueOf(capacity));
+                Cache<Integer, byte[]> memoryCache = new MemoryCache<>(properties);
+                Cache<Integer, byte[]> fileCache = new FileCache<>(fileProperties(keys), UUID.randomUUID().toString());
+                return new MultiLevelCache<>(Arrays.asList(memoryCache, fileCache), strategy(strategy));
+            default:
+                throw new IllegalArgumentException("Unknown cache " + type);
+        }
+    }
+
+    /**
+     * Creates a cache of the given type which does not evict, its limits are raised to {@code keys}.
+     */
+    static Cache<Integer, byte[]> createStore(String type, int keys) {
+        switch (type) {
+            case "offheap":
+                Properties properties = new Properties();
+                properties.setProperty(OffHeapCache.LIMIT, String.valueOf(keys));
+                properties.setProperty(OffHeapCache.SIZE_LIMIT, String.valueOf(256L << 20));
+                return new OffHeapCache<>(properties);
+            case "file":
+                return new FileCache<>(fileProperties(keys), UUID.randomUUID().toString());
+            case "logfile":
+                return new LogFileCache<>(fileProperties(keys), UUID.randomUUID().toString());
+            default:
+                throw new IllegalArgumentException("Unknown cache " + type);
+        }
+    }
+
+    private static Properties fileProperties(int keys) {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.FILES_LIMIT, String.valueOf(keys));
+        properties.setProperty(FileCache.SIZE_LIMIT, String.valueOf(Integer.MAX_VALUE));
+        return properties;
+    }
+}
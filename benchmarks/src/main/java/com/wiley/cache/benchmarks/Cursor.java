@@ -0,0 +1,29 @@
+package com.wiley.cache.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Position of a thread in the key sequence of {@link AbstractCacheBenchmark}, threads start at different positions.
+ */
+@State(Scope.Thread)
+public class Cursor {
+    private int index;
+    private int operations;
+
+    @Setup
+    public void setUp() {
+        index = ThreadLocalRandom.current().nextInt(AbstractCacheBenchmark.SEQUENCE);
+    }
+
+    int next() {
+        return index = (index + 1) & (AbstractCacheBenchmark.SEQUENCE - 1);
+    }
+
+    boolean isWrite() {
+        return ++operations % 10 == 0;
+    }
+}
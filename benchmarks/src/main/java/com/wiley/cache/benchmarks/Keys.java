@@ -0,0 +1,86 @@
+package com.wiley.cache.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Pre-generated key sequences, so the benchmarks measure the cache and not the random number generator.
+ */
+final class Keys {
+
+    private static final double ZIPFIAN_CONSTANT = 0.99;
+
+    private Keys() {
+    }
+
+    /**
+     * Sequence of {@code count} keys from {@code [0, items)}, {@code distribution} is "uniform" or "zipfian".
+     */
+    static Integer[] generate(String distribution, int items, int count, long seed) {
+        Random random = new Random(seed);
+        Integer[] keys = new Integer[count];
+        switch (distribution) {
+            case "uniform":
+                for (int i = 0; i < count; i++) {
+                    keys[i] = random.nextInt(items);
+                }
+                break;
+            case "zipfian":
+                Zipfian zipfian = new Zipfian(items, ZIPFIAN_CONSTANT);
+                for (int i = 0; i < count; i++) {
+                    keys[i] = scramble(zipfian.next(random), items);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+        return keys;
+    }
+
+    /**
+     * Spreads the popular ranks over the key space, otherwise the hottest keys would be neighbours.
+     */
+    private static int scramble(int rank, int items) {
+        long hash = rank * 0x9e3779b97f4a7c15L;
+        return (int) ((hash >>> 1) % items);
+    }
+
+    /**
+     * Zipfian generator of ranks as described in "Quickly Generating Billion-Record Synthetic Databases"
+     * by Gray et al. and used by YCSB, rank 0 is the most popular.
+     */
+    private static class Zipfian {
+        private final int items;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(int items, double theta) {
+            this.items = items;
+            this.theta = theta;
+            this.zetan = zeta(items, theta);
+            this.alpha = 1 / (1 - theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+        }
+
+        int next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
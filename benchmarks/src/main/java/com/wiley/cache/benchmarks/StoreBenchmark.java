@@ -0,0 +1,18 @@
+package com.wiley.cache.benchmarks;
+
+import com.wiley.cache.Cache;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Workloads of the caches which do not evict and so take no strategy, they hold the whole key space.
+ */
+public class StoreBenchmark extends AbstractCacheBenchmark {
+
+    @Param({"offheap", "file", "logfile"})
+    public String cacheType;
+
+    @Override
+    protected Cache<Integer, byte[]> createCache() {
+        return Caches.createStore(cacheType, KEYS);
+    }
+}
@@ -0,0 +1,60 @@
+package com.wiley.cache.benchmarks;
+
+import com.wiley.cache.Cache;
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.strategies.Strategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of choosing a victim: a read followed by the eviction of the entry chosen by the strategy
+ * and the insertion of it back, so the cache stays full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyBenchmark {
+
+    private static final int SEQUENCE = 1 << 16;
+
+    @Param({"lru", "linked-lru", "tinylfu", "random"})
+    public String strategy;
+
+    @Param({"20000"})
+    public int entries;
+
+    @Param({"uniform", "zipfian"})
+    public String distribution;
+
+    private Strategy victimStrategy;
+    private MemoryCache<Integer, Integer> cache;
+    private Integer[] keys;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty(MemoryCache.LIMIT, String.valueOf(entries));
+        victimStrategy = Caches.strategy(strategy);
+        // attached, so the strategy sees the accesses and removals
+        cache = new MemoryCache<>(properties, victimStrategy);
+        keys = Keys.generate(distribution, entries, SEQUENCE, 42);
+        for (int i = 0; i < entries; i++) {
+            cache.put(i, i);
+        }
+    }
+
+    @Benchmark
+    public Integer evict() {
+        index = (index + 1) & (SEQUENCE - 1);
+        cache.get(keys[index]);
+        Cache.Entry<Integer, Integer> victim = victimStrategy.poll(cache);
+        cache.remove(victim.getKey());
+        return cache.put(victim.getKey(), victim.getValue());
+    }
+}
@@ -0,0 +1,525 @@
+package com.wiley.cache;
+
+import com.wiley.cache.stats.CacheStats;
+import com.wiley.cache.stats.StatsCounter;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public abstract class AbstractCache<K, V> implements Cache<K, V> {
+
+    private final static Logger logger = Logger.getLogger(AbstractCache.class.getName());
+
+    public static final String EXPIRE_AFTER_WRITE = "cache.expire.after.write";
+    public static final String EXPIRE_AFTER_ACCESS = "cache.expire.after.access";
+    public static final String STATS_ENABLED = "cache.stats.enabled";
+
+    // levels of the timer wheel: ~1ms ticks spanning ~1s, ~1s ticks spanning ~1m, ~1m spanning ~1h,
+    // ~1h spanning ~1.6d and an overflow bucket
+    private static final int[] WHEEL_SHIFTS = {20, 30, 36, 42, 47};
+    private static final int[] WHEEL_BUCKETS = {1024, 64, 64, 32, 1};
+
+    protected ReentrantReadWriteLock.ReadLock readLock;
+    protected ReentrantReadWriteLock.WriteLock writeLock;
+
+    protected static Properties defaultProperties;
+    protected Properties properties;
+    protected int limit;
+
+    /**
+     * Expiration times in nanoseconds set by {@link #initExpiration()}, zero means no expiration.
+     */
+    protected long expireAfterWrite;
+    protected long expireAfterAccess;
+
+    /**
+     * Statistics recorder, {@link StatsCounter#DISABLED} unless {@link #STATS_ENABLED} is set.
+     */
+    protected StatsCounter stats;
+
+    {
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        readLock = lock.readLock();
+        writeLock = lock.writeLock();
+        if (defaultProperties == null) {
+            defaultProperties = new Properties();
+            InputStream is = null;
+            try {
+                is = new BufferedInputStream(getClass().getResourceAsStream("/default.properties"));
+                defaultProperties.load(is);
+                logger.info("default property file was successfully loaded");
+            } catch (IOException e) {
+                String message = "cannot load default properties";
+                logger.log(Level.SEVERE, message, e);
+                throw new CacheException("cannot load default properties");
+            } finally {
+                try {
+                    is.close();
+                } catch (NullPointerException | IOException ignored) {
+                }
+            }
+        }
+    }
+
+    public AbstractCache() {
+        properties = defaultProperties;
+        initStats();
+        init();
+    }
+    
+    public abstract List<Entry<K, V>> getEntries();
+
+    @Override
+    public Entry<K, V> getEntry(Object key) {
+        for (Entry<K, V> entry : getEntries()) {
+            if (entry.getKey().equals(key)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the keys one by one, caches which can do better override it.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void removeAll(Collection<?> keys) {
+        try {
+            writeLock.lock();
+            for (Object key : keys) {
+                remove(key);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        try {
+            readLock.lock();
+            return size() == 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public AbstractCache(Properties properties) {
+        if (properties == null) {
+            throw new NullPointerException("properties argument cannot be null");
+        }
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            properties.store(os, null);
+
+            this.properties = new Properties(defaultProperties);
+            this.properties.load(new ByteArrayInputStream(os.toByteArray()));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "cannot create properties", e);
+        }
+        initStats();
+        init();
+    }
+
+    abstract protected void init();
+
+    private void initStats() {
+        stats = Boolean.parseBoolean(properties.getProperty(STATS_ENABLED)) ? new StatsCounter() : StatsCounter.DISABLED;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats.snapshot();
+    }
+
+    @Override
+    public boolean isStatsEnabled() {
+        return stats.isEnabled();
+    }
+
+    /**
+     * Reads the expiration properties, called from {@link #init()} by caches which support expiration.
+     */
+    protected void initExpiration() {
+        expireAfterWrite = readExpiration(EXPIRE_AFTER_WRITE);
+        expireAfterAccess = readExpiration(EXPIRE_AFTER_ACCESS);
+    }
+
+    private long readExpiration(String property) {
+        long millis;
+        try {
+            millis = Math.max(0, Long.parseLong(properties.getProperty(property)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for " + property + " property", e);
+            millis = Long.valueOf(defaultProperties.getProperty(property));
+        }
+        if (millis > 0) {
+            logger.info(property + " set to " + millis + " ms");
+        }
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Sets the expiration of a written entry, {@code duration} overrides the expiration after write unless negative.
+     */
+    protected void setExpiration(SimpleEntry<?, ?> entry, long now, long duration) {
+        long afterWrite = duration < 0 ? expireAfterWrite : duration;
+        entry.writeExpirationTime = afterWrite > 0 ? now + afterWrite : 0;
+        entry.expirationTime = earliest(entry.writeExpirationTime, expireAfterAccess > 0 ? now + expireAfterAccess : 0);
+    }
+
+    /**
+     * Earliest of two expiration times, zero stands for no expiration.
+     */
+    protected static long earliest(long time, long otherTime) {
+        if (time == 0) {
+            return otherTime;
+        }
+        if (otherTime == 0) {
+            return time;
+        }
+        return time - otherTime < 0 ? time : otherTime;
+    }
+
+    /**
+     * Called every time an entry of this cache is touched with {@code getValue(false)}.
+     * Caches which keep entries in access order move the entry to the tail of their {@link AccessList}.
+     */
+    protected void onAccess(SimpleEntry<?, ?> entry) {
+    }
+
+    public class SimpleEntry<K, V> extends Cache.Entry<K, V> {
+
+        protected long lastAccessTime = System.nanoTime();
+
+        protected long expirationTime;
+        protected long writeExpirationTime;
+        protected int weight;
+
+        SimpleEntry<K, V> before;
+        SimpleEntry<K, V> after;
+        SimpleEntry<K, V> previousInTimer;
+        SimpleEntry<K, V> nextInTimer;
+
+        public SimpleEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V getValue(boolean quite) {
+            if (!quite) {
+                lastAccessTime = System.nanoTime();
+                if (expireAfterAccess > 0) {
+                    // the timer wheel reschedules the entry once its old expiration time is reached
+                    expirationTime = earliest(writeExpirationTime, lastAccessTime + expireAfterAccess);
+                }
+                onAccess(this);
+            }
+            return value;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            V _value = this.value;
+            this.value = value;
+            return _value;
+        }
+
+        public Long getLastAccessTime() {
+            return lastAccessTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Cache.Entry)) return false;
+
+            Cache.Entry that = (Cache.Entry) o;
+
+            if (key != null ? !key.equals(that.key) : that.key != null) return false;
+            if (value != null ? !value.equals(that.value) : that.value != null) return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = key != null ? key.hashCode() : 0;
+            result = 31 * result + (value != null ? value.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "SimpleEntry{key=" + key + ", value=" + value + "}";
+        }
+
+        public void setLastAccessTime(long lastAccessTime) {
+            this.lastAccessTime = lastAccessTime;
+        }
+
+        /**
+         * Time in {@link System#nanoTime()} units when the entry expires, zero if it never does.
+         */
+        public long getExpirationTime() {
+            return expirationTime;
+        }
+
+        public void setExpirationTime(long expirationTime) {
+            this.expirationTime = expirationTime;
+        }
+
+        /**
+         * Weight the entry was stored with by a cache bounded by weight.
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public boolean isExpired(long now) {
+            return expirationTime != 0 && expirationTime - now <= 0;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list of entries ordered by access time, the eldest entry first.
+     * Links are stored in the entries themselves, so adding, touching, removing
+     * and taking the eldest or the youngest entry are constant time operations.
+     */
+    protected class AccessList {
+
+        private SimpleEntry<K, V> head;
+        private SimpleEntry<K, V> tail;
+
+        public AccessList() {
+        }
+
+        public synchronized void add(SimpleEntry<K, V> entry) {
+            link(entry);
+        }
+
+        public synchronized void touch(SimpleEntry<K, V> entry) {
+            if (entry != tail && isLinked(entry)) {
+                unlink(entry);
+                link(entry);
+            }
+        }
+
+        public synchronized void remove(SimpleEntry<K, V> entry) {
+            if (isLinked(entry)) {
+                unlink(entry);
+            }
+        }
+
+        public synchronized void clear() {
+            SimpleEntry<K, V> entry = head;
+            while (entry != null) {
+                SimpleEntry<K, V> next = entry.after;
+                entry.before = entry.after = null;
+                entry = next;
+            }
+            head = tail = null;
+        }
+
+        public synchronized SimpleEntry<K, V> eldest() {
+            return head;
+        }
+
+        public synchronized SimpleEntry<K, V> youngest() {
+            return tail;
+        }
+
+        private boolean isLinked(SimpleEntry<K, V> entry) {
+            return entry.before != null || entry == head;
+        }
+
+        private void link(SimpleEntry<K, V> entry) {
+            entry.before = tail;
+            entry.after = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.after = entry;
+            }
+            tail = entry;
+        }
+
+        private void unlink(SimpleEntry<K, V> entry) {
+            if (entry.before == null) {
+                head = entry.after;
+            } else {
+                entry.before.after = entry.after;
+            }
+            if (entry.after == null) {
+                tail = entry.before;
+            } else {
+                entry.after.before = entry.before;
+            }
+            entry.before = entry.after = null;
+        }
+    }
+
+    /**
+     * Hierarchical timer wheel of entries ordered by expiration time. Each level is an array of buckets,
+     * every bucket is an intrusive circular list of entries expiring within its tick. Scheduling and
+     * cancelling are constant time, {@link #advance(long)} visits only the buckets whose ticks have passed
+     * and moves entries of coarse buckets down to finer levels. Entries whose expiration time was extended
+     * after scheduling are rescheduled instead of being returned.
+     */
+    protected class TimerWheel {
+
+        private final SimpleEntry<K, V>[][] wheel;
+        private long time;
+
+        @SuppressWarnings("unchecked")
+        public TimerWheel() {
+            time = System.nanoTime();
+            wheel = (SimpleEntry<K, V>[][]) Array.newInstance(SimpleEntry.class, WHEEL_BUCKETS.length, 0);
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = (SimpleEntry<K, V>[]) Array.newInstance(SimpleEntry.class, WHEEL_BUCKETS[i]);
+                for (int j = 0; j < wheel[i].length; j++) {
+                    SimpleEntry<K, V> sentinel = new SimpleEntry<>(null, null);
+                    sentinel.previousInTimer = sentinel.nextInTimer = sentinel;
+                    wheel[i][j] = sentinel;
+                }
+            }
+        }
+
+        /**
+         * Schedules the entry at its expiration time, moving it if it was already scheduled.
+         */
+        public synchronized void schedule(SimpleEntry<K, V> entry) {
+            if (entry.nextInTimer != null) {
+                unlink(entry);
+            }
+            if (entry.expirationTime != 0) {
+                link(bucket(entry.expirationTime), entry);
+            }
+        }
+
+        public synchronized void cancel(SimpleEntry<K, V> entry) {
+            if (entry.nextInTimer != null) {
+                unlink(entry);
+            }
+        }
+
+        /**
+         * Moves the wheel to the given time and returns the entries which expired.
+         */
+        public synchronized List<SimpleEntry<K, V>> advance(long now) {
+            List<SimpleEntry<K, V>> expired = new ArrayList<>();
+            long previous = time;
+            time = now;
+            for (int i = 0; i < WHEEL_SHIFTS.length; i++) {
+                long previousTicks = previous >>> WHEEL_SHIFTS[i];
+                long currentTicks = now >>> WHEEL_SHIFTS[i];
+                if (currentTicks - previousTicks <= 0) {
+                    break;
+                }
+                expire(i, previousTicks, currentTicks - previousTicks, expired);
+            }
+            return expired;
+        }
+
+        public synchronized void clear() {
+            for (SimpleEntry<K, V>[] buckets : wheel) {
+                for (SimpleEntry<K, V> sentinel : buckets) {
+                    SimpleEntry<K, V> entry = sentinel.nextInTimer;
+                    while (entry != sentinel) {
+                        SimpleEntry<K, V> next = entry.nextInTimer;
+                        entry.previousInTimer = entry.nextInTimer = null;
+                        entry = next;
+                    }
+                    sentinel.previousInTimer = sentinel.nextInTimer = sentinel;
+                }
+            }
+        }
+
+        private void expire(int level, long previousTicks, long delta, List<SimpleEntry<K, V>> expired) {
+            SimpleEntry<K, V>[] buckets = wheel[level];
+            int mask = buckets.length - 1;
+            int steps = (int) Math.min(1 + delta, buckets.length);
+            int start = (int) (previousTicks & mask);
+            for (int i = start; i < start + steps; i++) {
+                SimpleEntry<K, V> sentinel = buckets[i & mask];
+                SimpleEntry<K, V> entry = sentinel.nextInTimer;
+                sentinel.previousInTimer = sentinel.nextInTimer = sentinel;
+                while (entry != sentinel) {
+                    SimpleEntry<K, V> next = entry.nextInTimer;
+                    entry.previousInTimer = entry.nextInTimer = null;
+                    if (entry.expirationTime == 0) {
+                        // expiration was removed
+                    } else if (entry.expirationTime - time > 0) {
+                        link(bucket(entry.expirationTime), entry);
+                    } else {
+                        expired.add(entry);
+                    }
+                    entry = next;
+                }
+            }
+        }
+
+        private SimpleEntry<K, V> bucket(long expirationTime) {
+            long duration = expirationTime - time;
+            int last = wheel.length - 1;
+            for (int i = 0; i < last; i++) {
+                if (duration < 1L << WHEEL_SHIFTS[i + 1]) {
+                    long ticks = expirationTime >>> WHEEL_SHIFTS[i];
+                    return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+                }
+            }
+            return wheel[last][0];
+        }
+
+        private void link(SimpleEntry<K, V> sentinel, SimpleEntry<K, V> entry) {
+            entry.previousInTimer = sentinel.previousInTimer;
+            entry.nextInTimer = sentinel;
+            sentinel.previousInTimer.nextInTimer = entry;
+            sentinel.previousInTimer = entry;
+        }
+
+        private void unlink(SimpleEntry<K, V> entry) {
+            entry.previousInTimer.nextInTimer = entry.nextInTimer;
+            entry.nextInTimer.previousInTimer = entry.previousInTimer;
+            entry.previousInTimer = entry.nextInTimer = null;
+        }
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+}
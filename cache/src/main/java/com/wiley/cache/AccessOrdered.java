@@ -0,0 +1,12 @@
+package com.wiley.cache;
+
+/**
+ * Cache which keeps its entries ordered by access time,
+ * so the eldest and the youngest entries are available in constant time.
+ */
+public interface AccessOrdered<K, V> {
+
+    Cache.Entry<K, V> getEldestEntry();
+
+    Cache.Entry<K, V> getYoungestEntry();
+}
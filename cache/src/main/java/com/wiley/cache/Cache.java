@@ -0,0 +1,49 @@
+package com.wiley.cache;
+
+import com.wiley.cache.stats.CacheStats;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface Cache<K, V> extends Map<K, V> {
+
+    List<Entry<K, V>> getEntries();
+    int getLimit();
+
+    /**
+     * Returns the entry of the key without touching its access time, or {@code null}.
+     */
+    Entry<K, V> getEntry(Object key);
+
+    /**
+     * Returns the values of the keys, keys without a value are left out.
+     */
+    Map<K, V> getAll(Collection<? extends K> keys);
+
+    void removeAll(Collection<?> keys);
+
+    /**
+     * Returns a snapshot of the statistics of the cache, all counters are zero unless {@code cache.stats.enabled} is set.
+     */
+    CacheStats getStats();
+
+    /**
+     * Returns whether the cache records statistics, that is whether {@code cache.stats.enabled} is set.
+     */
+    boolean isStatsEnabled();
+
+    abstract class Entry<K, V> implements Map.Entry<K, V> {
+        protected K key;
+        protected V value;
+
+        protected Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+        
+        public abstract Long getLastAccessTime();
+
+        public abstract V getValue(boolean quite);
+    }
+}
@@ -6,4 +6,8 @@ public class CacheException extends RuntimeException {
         super(message);
     }
 
+    public CacheException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.wiley.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes values missing in a cache, see {@link com.wiley.cache.impl.LoadingCache}.
+ */
+public abstract class CacheLoader<K, V> {
+
+    /**
+     * Loads the value of the key, {@code null} if there is none.
+     */
+    public abstract V load(K key) throws Exception;
+
+    /**
+     * Loads the values of several keys at once, keys without a value are left out of the result.
+     * Loads them one by one by default, override it when the source supports bulk reads.
+     */
+    public Map<K, V> loadAll(Collection<? extends K> keys) throws Exception {
+        Map<K, V> values = new HashMap<>();
+        for (K key : keys) {
+            V value = load(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,9 @@
+package com.wiley.cache;
+
+/**
+ * Callback for entries evicted by a cache to make room for a new entry.
+ */
+public interface EvictionListener<K, V> {
+
+    void onEviction(Cache.Entry<K, V> entry);
+}
@@ -0,0 +1,26 @@
+package com.wiley.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache which expires entries after a write or an access, see {@link AbstractCache#EXPIRE_AFTER_WRITE}
+ * and {@link AbstractCache#EXPIRE_AFTER_ACCESS}.
+ */
+public interface Expiring<K, V> {
+
+    /**
+     * Stores the entry which expires the given time after this write instead of the configured time after write,
+     * zero means it never expires after write. Expiration after access still applies.
+     */
+    V put(K key, V value, long duration, TimeUnit unit);
+
+    /**
+     * Removes the expired entries which were not reclaimed yet.
+     */
+    void cleanUp();
+
+    /**
+     * Sets the callback for the entries the cache drops on its own, e.g. to keep an index of the entries current.
+     */
+    void setRemovalListener(RemovalListener<? super K> removalListener);
+}
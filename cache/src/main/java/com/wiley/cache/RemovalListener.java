@@ -0,0 +1,10 @@
+package com.wiley.cache;
+
+/**
+ * Callback for entries a cache drops on its own, because they expired or their values were collected.
+ * It is called under the locks of the cache, so it should only take note of the key.
+ */
+public interface RemovalListener<K> {
+
+    void onRemoval(K key);
+}
@@ -0,0 +1,15 @@
+package com.wiley.cache;
+
+import java.util.Properties;
+
+/**
+ * Creates the shards of a {@link com.wiley.cache.impl.ShardedCache}.
+ */
+public interface ShardFactory<K, V> {
+
+    /**
+     * Creates the shard with the given index. The properties hold the limits of the cache divided
+     * by the number of shards; caches stored on disk should use a directory of their own per shard.
+     */
+    Cache<K, V> create(int shard, Properties properties);
+}
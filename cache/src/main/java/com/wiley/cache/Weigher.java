@@ -0,0 +1,9 @@
+package com.wiley.cache;
+
+/**
+ * Computes the weight of an entry, usually its approximate size in bytes, see {@link Weighers}.
+ */
+public interface Weigher<K, V> {
+
+    int weigh(K key, V value);
+}
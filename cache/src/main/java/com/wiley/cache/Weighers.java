@@ -0,0 +1,148 @@
+package com.wiley.cache;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Built-in {@link Weigher}s.
+ */
+public final class Weighers {
+
+    // entry object of the cache and the node of its hash map
+    private static final int ENTRY_OVERHEAD = 104;
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 4;
+    // header of an object, without the padding of an array header
+    private static final int HEADER = 12;
+
+    // shallow sizes of the classes weighed so far, the fields of a class are only walked once
+    private static final ClassValue<Long> SHALLOW_SIZES = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            long size = HEADER;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += sizeOfField(field.getType());
+                    }
+                }
+            }
+            return align(size);
+        }
+    };
+
+    /**
+     * Weighs every entry as one, a weight budget then limits the number of entries.
+     */
+    public static final Weigher<Object, Object> SINGLETON = new Weigher<Object, Object>() {
+        @Override
+        public int weigh(Object key, Object value) {
+            return 1;
+        }
+    };
+
+    /**
+     * Estimates the heap size of an entry in bytes assuming a 64 bit JVM with compressed references.
+     * Strings, boxed primitives, arrays, collections and maps are measured, other objects are weighed by their
+     * own fields only, the objects they refer to are not followed.
+     */
+    public static final Weigher<Object, Object> ESTIMATOR = new Weigher<Object, Object>() {
+        @Override
+        public int weigh(Object key, Object value) {
+            long size = ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+            return (int) Math.min(Integer.MAX_VALUE, size);
+        }
+    };
+
+    private Weighers() {
+    }
+
+    /**
+     * Approximate heap size of the object in bytes.
+     */
+    public static long sizeOf(Object object) {
+        if (object == null) {
+            return 0;
+        }
+        if (object instanceof String) {
+            return align(24 + OBJECT_HEADER + 2L * ((String) object).length());
+        }
+        if (object instanceof Long || object instanceof Double) {
+            return 24;
+        }
+        if (object instanceof Number || object instanceof Boolean || object instanceof Character) {
+            return OBJECT_HEADER;
+        }
+        if (object instanceof byte[]) {
+            return align(OBJECT_HEADER + ((byte[]) object).length);
+        }
+        if (object instanceof boolean[]) {
+            return align(OBJECT_HEADER + ((boolean[]) object).length);
+        }
+        if (object instanceof char[]) {
+            return align(OBJECT_HEADER + 2L * ((char[]) object).length);
+        }
+        if (object instanceof short[]) {
+            return align(OBJECT_HEADER + 2L * ((short[]) object).length);
+        }
+        if (object instanceof int[]) {
+            return align(OBJECT_HEADER + 4L * ((int[]) object).length);
+        }
+        if (object instanceof float[]) {
+            return align(OBJECT_HEADER + 4L * ((float[]) object).length);
+        }
+        if (object instanceof long[]) {
+            return align(OBJECT_HEADER + 8L * ((long[]) object).length);
+        }
+        if (object instanceof double[]) {
+            return align(OBJECT_HEADER + 8L * ((double[]) object).length);
+        }
+        if (object instanceof Object[]) {
+            Object[] array = (Object[]) object;
+            long size = align(OBJECT_HEADER + (long) REFERENCE * array.length);
+            for (Object element : array) {
+                size += sizeOf(element);
+            }
+            return size;
+        }
+        if (object instanceof Collection) {
+            Collection<?> collection = (Collection<?>) object;
+            long size = 48 + 32L * collection.size();
+            for (Object element : collection) {
+                size += sizeOf(element);
+            }
+            return size;
+        }
+        if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            long size = 48 + 36L * map.size();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        return SHALLOW_SIZES.get(object.getClass());
+    }
+
+    private static int sizeOfField(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
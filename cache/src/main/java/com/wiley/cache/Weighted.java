@@ -0,0 +1,22 @@
+package com.wiley.cache;
+
+/**
+ * Cache bounded by the cumulative weight of its entries instead of their number.
+ */
+public interface Weighted<K, V> {
+
+    int weigh(K key, V value);
+
+    /**
+     * Stores the entry with the weight {@link #weigh} gave for it, so the caller weighing the entry beforehand
+     * doesn't make the cache weigh it again.
+     */
+    V put(K key, V value, int weight);
+
+    long getWeight();
+
+    /**
+     * Weight budget of the cache, zero if the cache is bounded by the number of entries.
+     */
+    long getWeightLimit();
+}
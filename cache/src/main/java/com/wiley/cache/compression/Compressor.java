@@ -0,0 +1,22 @@
+package com.wiley.cache.compression;
+
+import java.io.IOException;
+
+/**
+ * Compresses the serialized values of cache entries. The length of the original bytes is stored by the cache,
+ * so compressed blocks don't have to be self-delimiting.
+ */
+public interface Compressor {
+
+    /**
+     * Identifier of the compressor stored in the header byte of a compressed record.
+     */
+    byte getId();
+
+    byte[] compress(byte[] data);
+
+    /**
+     * Restores {@code length} bytes, throws {@link IOException} if the block is damaged.
+     */
+    byte[] decompress(byte[] data, int length) throws IOException;
+}
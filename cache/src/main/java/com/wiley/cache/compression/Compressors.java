@@ -0,0 +1,44 @@
+package com.wiley.cache.compression;
+
+/**
+ * Built-in compressors, selected by name in the configuration and by identifier when records are read.
+ */
+public final class Compressors {
+
+    public static final Compressor LZ = new LzCompressor();
+
+    public static final Compressor DEFLATE = new DeflateCompressor();
+
+    private Compressors() {
+    }
+
+    /**
+     * Compressor of the given name, {@code lz} or {@code deflate}, {@code null} for {@code none}.
+     */
+    public static Compressor forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "none":
+                return null;
+            case "lz":
+                return LZ;
+            case "deflate":
+                return DEFLATE;
+            default:
+                throw new IllegalArgumentException("Unknown compressor " + name);
+        }
+    }
+
+    /**
+     * Compressor with the identifier stored in the header byte of a record.
+     */
+    public static Compressor forId(byte id) {
+        switch (id) {
+            case LzCompressor.ID:
+                return LZ;
+            case DeflateCompressor.ID:
+                return DEFLATE;
+            default:
+                throw new IllegalArgumentException("Unknown compressor " + id);
+        }
+    }
+}
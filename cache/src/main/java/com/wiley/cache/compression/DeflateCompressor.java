@@ -0,0 +1,66 @@
+package com.wiley.cache.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw Deflate without the zlib header, slower than {@link LzCompressor} but compresses text better.
+ */
+final class DeflateCompressor implements Compressor {
+
+    static final byte ID = 2;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[Math.min(data.length + 16, 8192)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int length) throws IOException {
+        // nowrap inflaters may need a byte after the end of the input
+        Inflater inflater = new Inflater(true);
+        try {
+            byte[] input = new byte[data.length + 1];
+            System.arraycopy(data, 0, input, 0, data.length);
+            inflater.setInput(input);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int inflated = inflater.inflate(result, offset, length - offset);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += inflated;
+            }
+            // reaches the end of the stream, which must not hold more bytes
+            if (offset != length || !inflater.finished() && inflater.inflate(new byte[1]) != 0 || !inflater.finished()) {
+                throw new IOException("Malformed compressed block");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Malformed compressed block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.wiley.cache.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fast LZ77 compressor writing the LZ4 block format: sequences of a token, literals, a two byte offset
+ * and a match length. Matches of at least four bytes are found through a hash table of the last position
+ * of every four byte sequence, there is no match search beyond it.
+ */
+final class LzCompressor implements Compressor {
+
+    static final byte ID = 1;
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_SEARCH_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xffff;
+    private static final int HASH_BITS = 12;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] src) {
+        byte[] dst = new byte[src.length + src.length / 255 + 16];
+        int[] table = new int[1 << HASH_BITS];
+        int anchor = 0;
+        int op = 0;
+        int ip = 0;
+        int matchLimit = src.length - LAST_LITERALS;
+        while (ip <= src.length - MATCH_SEARCH_LIMIT) {
+            int sequence = readInt(src, ip);
+            int h = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            // positions are stored plus one, zero is an empty slot
+            int ref = table[h] - 1;
+            table[h] = ip + 1;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                ip++;
+                continue;
+            }
+            int length = MIN_MATCH;
+            while (ip + length < matchLimit && src[ref + length] == src[ip + length]) {
+                length++;
+            }
+            int token = op;
+            op = writeLiterals(src, anchor, ip - anchor, dst, op);
+            int offset = ip - ref;
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            int matchLength = length - MIN_MATCH;
+            dst[token] |= Math.min(matchLength, 15);
+            if (matchLength >= 15) {
+                op = writeLength(dst, op, matchLength - 15);
+            }
+            ip += length;
+            anchor = ip;
+        }
+        op = writeLiterals(src, anchor, src.length - anchor, dst, op);
+        return Arrays.copyOf(dst, op);
+    }
+
+    @Override
+    public byte[] decompress(byte[] src, int length) throws IOException {
+        byte[] dst = new byte[length];
+        int ip = 0;
+        int op = 0;
+        try {
+            while (ip < src.length) {
+                int token = src[ip++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip == src.length) {
+                    break;
+                }
+                int offset = (src[ip++] & 0xff) | (src[ip++] & 0xff) << 8;
+                int match = token & 0xf;
+                if (match == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        match += b;
+                    } while (b == 255);
+                }
+                match += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < 0 || op + match > length) {
+                    throw new IOException("Malformed compressed block");
+                }
+                // byte by byte, the match may overlap the bytes it produces
+                for (int i = 0; i < match; i++) {
+                    dst[op++] = dst[ref++];
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Malformed compressed block", e);
+        }
+        if (op != length) {
+            throw new IOException("Malformed compressed block");
+        }
+        return dst;
+    }
+
+    /**
+     * Writes the token with the literal length followed by the literals, the match length is added to the token
+     * by the caller.
+     */
+    private static int writeLiterals(byte[] src, int from, int literals, byte[] dst, int op) {
+        dst[op++] = (byte) (Math.min(literals, 15) << 4);
+        if (literals >= 15) {
+            op = writeLength(dst, op, literals - 15);
+        }
+        System.arraycopy(src, from, dst, op, literals);
+        return op + literals;
+    }
+
+    private static int writeLength(byte[] dst, int op, int length) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] bytes, int i) {
+        return (bytes[i] & 0xff) | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff) << 16 | bytes[i + 3] << 24;
+    }
+}
@@ -0,0 +1,455 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.AbstractCache;
+import com.wiley.cache.AccessOrdered;
+import com.wiley.cache.Cache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.EvictionListener;
+import com.wiley.cache.strategies.Strategy;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Memory cache split into independently locked segments, so readers and writers
+ * of different segments never block each other. Every segment keeps its own
+ * access ordered list, the limit is shared by all segments.
+ */
+public class ConcurrentMemoryCache<K, V> extends AbstractCache<K, V> implements AccessOrdered<K, V> {
+
+    private final static Logger logger = Logger.getLogger(ConcurrentMemoryCache.class.getName());
+
+    public static final String SEGMENTS = "cache.memory.segments";
+
+    private Segment[] segments;
+    private int segmentMask;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private Strategy strategy;
+    private EvictionListener<K, V> evictionListener;
+
+    public ConcurrentMemoryCache() {
+    }
+
+    public ConcurrentMemoryCache(Properties props) {
+        super(props);
+    }
+
+    /**
+     * Creates a cache which evicts the entry chosen by {@code strategy.poll} when the limit is reached
+     * instead of throwing {@link CacheException}.
+     */
+    public ConcurrentMemoryCache(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public ConcurrentMemoryCache(Properties props, Strategy strategy) {
+        super(props);
+        this.strategy = strategy;
+    }
+
+    @Override
+    protected void init() {
+        try {
+            this.limit = Math.max(0, Integer.parseInt(properties.getProperty(MemoryCache.LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for limit property", e);
+            this.limit = Integer.valueOf(defaultProperties.getProperty(MemoryCache.LIMIT));
+        }
+        logger.info("Memory cache limit set to " + limit);
+
+        int concurrency;
+        try {
+            concurrency = Math.max(1, Integer.parseInt(properties.getProperty(SEGMENTS)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for segments property", e);
+            concurrency = Integer.valueOf(defaultProperties.getProperty(SEGMENTS));
+        }
+        int size = 1;
+        while (size < concurrency) {
+            size <<= 1;
+        }
+        segments = newSegments(size);
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment();
+        }
+        segmentMask = size - 1;
+        logger.info("Memory cache segments set to " + size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Segment[] newSegments(int size) {
+        return (Segment[]) Array.newInstance(Segment.class, size);
+    }
+
+    private Segment segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h ^= (h >>> 7);
+        return segments[h & segmentMask];
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Segment segment = segmentFor(key);
+        try {
+            segment.readLock.lock();
+            return segment.storage.containsKey(key);
+        } finally {
+            segment.readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (Segment segment : segments) {
+            try {
+                segment.readLock.lock();
+                for (SimpleEntry<K, V> entry : segment.storage.values()) {
+                    if (entry.getValue().equals(value)) {
+                        return true;
+                    }
+                }
+            } finally {
+                segment.readLock.unlock();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        long start = stats.start();
+        Segment segment = segmentFor(key);
+        try {
+            segment.readLock.lock();
+            SimpleEntry<K, V> entry = segment.storage.get(key);
+            if (strategy != null) {
+                strategy.recordAccess(this, key, entry != null);
+            }
+            stats.recordGet(start, entry != null);
+            return entry == null ? null : entry.getValue(false);
+        } finally {
+            segment.readLock.unlock();
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null  || value == null) {
+            throw new NullPointerException("Key and value cannot be null");
+        }
+        long start = stats.start();
+        Segment segment = segmentFor(key);
+        for (;;) {
+            try {
+                segment.writeLock.lock();
+                SimpleEntry<K, V> previous = segment.storage.get(key);
+                if (previous != null || reserve()) {
+                    if (previous != null) {
+                        segment.accessList.remove(previous);
+                    }
+                    SimpleEntry<K, V> entry = new SimpleEntry<>(key, value);
+                    segment.storage.put(key, entry);
+                    segment.accessList.add(entry);
+                    if (strategy != null) {
+                        strategy.recordAccess(this, key, true);
+                    }
+                    stats.recordPut(start);
+                    return previous == null ? null : previous.getValue();
+                }
+            } finally {
+                segment.writeLock.unlock();
+            }
+            // the victim may live in another segment, so it is evicted without holding the segment lock
+            evict();
+        }
+    }
+
+    private boolean reserve() {
+        for (;;) {
+            int current = count.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void evict() {
+        Cache.Entry<K, V> victim = strategy == null || limit == 0 ? null : strategy.poll(this);
+        if (victim == null) {
+            throw new CacheException("Cache limit is exceeded. Limit: " + limit);
+        }
+        Segment segment = segmentFor(victim.getKey());
+        SimpleEntry<K, V> entry;
+        try {
+            segment.writeLock.lock();
+            entry = segment.storage.get(victim.getKey());
+            if (entry != victim) {
+                // somebody else has already evicted or replaced it
+                return;
+            }
+            segment.storage.remove(victim.getKey());
+            segment.accessList.remove(entry);
+            count.decrementAndGet();
+            strategy.recordRemoval(this, entry.getKey());
+            stats.recordEviction();
+        } finally {
+            segment.writeLock.unlock();
+        }
+        if (evictionListener != null) {
+            evictionListener.onEviction(entry);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Segment segment = segmentFor(key);
+        try {
+            segment.writeLock.lock();
+            SimpleEntry<K, V> entry = segment.storage.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            segment.accessList.remove(entry);
+            count.decrementAndGet();
+            if (strategy != null) {
+                strategy.recordRemoval(this, key);
+            }
+            return entry.getValue();
+        } finally {
+            segment.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the keys segment by segment, locking each segment once.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        int misses = 0;
+        Map<Segment, List<K>> batches = groupBySegment(keys);
+        for (Map.Entry<Segment, List<K>> batch : batches.entrySet()) {
+            Segment segment = batch.getKey();
+            try {
+                segment.readLock.lock();
+                for (K key : batch.getValue()) {
+                    SimpleEntry<K, V> entry = segment.storage.get(key);
+                    if (strategy != null) {
+                        strategy.recordAccess(this, key, entry != null);
+                    }
+                    if (entry != null) {
+                        values.put(key, entry.getValue(false));
+                    } else {
+                        misses++;
+                    }
+                }
+            } finally {
+                segment.readLock.unlock();
+            }
+        }
+        stats.recordGets(values.size(), misses);
+        return values;
+    }
+
+    @Override
+    public void removeAll(Collection<?> keys) {
+        Map<Segment, List<Object>> batches = groupBySegment(keys);
+        for (Map.Entry<Segment, List<Object>> batch : batches.entrySet()) {
+            Segment segment = batch.getKey();
+            try {
+                segment.writeLock.lock();
+                for (Object key : batch.getValue()) {
+                    SimpleEntry<K, V> entry = segment.storage.remove(key);
+                    if (entry != null) {
+                        segment.accessList.remove(entry);
+                        count.decrementAndGet();
+                        if (strategy != null) {
+                            strategy.recordRemoval(this, key);
+                        }
+                    }
+                }
+            } finally {
+                segment.writeLock.unlock();
+            }
+        }
+    }
+
+    private <T> Map<Segment, List<T>> groupBySegment(Collection<? extends T> keys) {
+        Map<Segment, List<T>> batches = new LinkedHashMap<>();
+        for (T key : keys) {
+            Segment segment = segmentFor(key);
+            List<T> batch = batches.get(segment);
+            if (batch == null) {
+                batch = new ArrayList<>();
+                batches.put(segment, batch);
+            }
+            batch.add(key);
+        }
+        return batches;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        for (Map.Entry<? extends K, ? extends V>  entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            try {
+                segment.writeLock.lock();
+                count.addAndGet(-segment.storage.size());
+                segment.storage.clear();
+                segment.accessList.clear();
+            } finally {
+                segment.writeLock.unlock();
+            }
+        }
+        if (strategy != null) {
+            strategy.recordClear(this);
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> set = new HashSet<>();
+        for (Segment segment : segments) {
+            try {
+                segment.readLock.lock();
+                set.addAll(segment.storage.keySet());
+            } finally {
+                segment.readLock.unlock();
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public Collection<V> values() {
+        Collection<V> collection = new ArrayList<>();
+        for (Segment segment : segments) {
+            try {
+                segment.readLock.lock();
+                for (SimpleEntry<K, V> entry : segment.storage.values()) {
+                    collection.add(entry.getValue());
+                }
+            } finally {
+                segment.readLock.unlock();
+            }
+        }
+        return collection;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> set = new HashSet<>();
+        for (Segment segment : segments) {
+            try {
+                segment.readLock.lock();
+                for (SimpleEntry<K, V> entry : segment.storage.values()) {
+                    set.add(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue()));
+                }
+            } finally {
+                segment.readLock.unlock();
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        List<Entry<K, V>> list = new ArrayList<>();
+        for (Segment segment : segments) {
+            try {
+                segment.readLock.lock();
+                list.addAll(segment.storage.values());
+            } finally {
+                segment.readLock.unlock();
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public Cache.Entry<K, V> getEntry(Object key) {
+        Segment segment = segmentFor(key);
+        try {
+            segment.readLock.lock();
+            return segment.storage.get(key);
+        } finally {
+            segment.readLock.unlock();
+        }
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void setEvictionListener(EvictionListener<K, V> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    @Override
+    public Cache.Entry<K, V> getEldestEntry() {
+        Cache.Entry<K, V> eldest = null;
+        for (Segment segment : segments) {
+            Cache.Entry<K, V> entry = segment.accessList.eldest();
+            if (entry != null && (eldest == null || entry.getLastAccessTime() < eldest.getLastAccessTime())) {
+                eldest = entry;
+            }
+        }
+        return eldest;
+    }
+
+    @Override
+    public Cache.Entry<K, V> getYoungestEntry() {
+        Cache.Entry<K, V> youngest = null;
+        for (Segment segment : segments) {
+            Cache.Entry<K, V> entry = segment.accessList.youngest();
+            if (entry != null && (youngest == null || entry.getLastAccessTime() > youngest.getLastAccessTime())) {
+                youngest = entry;
+            }
+        }
+        return youngest;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void onAccess(SimpleEntry<?, ?> entry) {
+        segmentFor(entry.getKey()).accessList.touch((SimpleEntry<K, V>) entry);
+    }
+
+    private class Segment {
+        private final Map<K, SimpleEntry<K, V>> storage = new HashMap<>();
+        private final AccessList accessList = new AccessList();
+        private final ReentrantReadWriteLock.ReadLock readLock;
+        private final ReentrantReadWriteLock.WriteLock writeLock;
+
+        private Segment() {
+            ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+            readLock = lock.readLock();
+            writeLock = lock.writeLock();
+        }
+    }
+}
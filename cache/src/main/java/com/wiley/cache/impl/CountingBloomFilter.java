@@ -0,0 +1,99 @@
+package com.wiley.cache.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Counting Bloom filter telling that an item was definitely not added. Each item maps to five byte counters
+ * chosen by double hashing, eight counters are allocated per expected item which keeps false positives around
+ * two percent. A saturated counter is never decremented, so removals cannot cause false negatives.
+ */
+class CountingBloomFilter {
+
+    private static final int HASHES = 5;
+    private static final int COUNTERS_PER_ITEM = 8;
+    private static final int MAX_LENGTH = 1 << 22;
+    private static final int SATURATED = 0xff;
+
+    private final byte[] counters;
+    private final int mask;
+
+    CountingBloomFilter(int expectedItems) {
+        long wanted = (long) Math.max(expectedItems, 1) * COUNTERS_PER_ITEM;
+        int length = 64;
+        while (length < wanted && length < MAX_LENGTH) {
+            length <<= 1;
+        }
+        counters = new byte[length];
+        mask = length - 1;
+    }
+
+    void add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int index = (h1 + i * h2) & mask;
+            if ((counters[index] & 0xff) != SATURATED) {
+                counters[index]++;
+            }
+        }
+    }
+
+    void remove(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int index = (h1 + i * h2) & mask;
+            int count = counters[index] & 0xff;
+            if (count != 0 && count != SATURATED) {
+                counters[index]--;
+            }
+        }
+    }
+
+    boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            if (counters[(h1 + i * h2) & mask] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(counters, (byte) 0);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(counters.length);
+        out.write(counters);
+    }
+
+    /**
+     * Reads the counters written by {@link #write(DataOutput)}, returns {@code false} and leaves the filter
+     * unchanged if they were written by a filter of another size.
+     */
+    boolean read(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length != counters.length) {
+            in.skipBytes(length);
+            return false;
+        }
+        in.readFully(counters);
+        return true;
+    }
+
+    /**
+     * Spreads the two halves of an item identity over 64 bits.
+     */
+    static long hash(int high, int low) {
+        long h = ((long) high << 32) ^ (low & 0xffffffffL);
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,1713 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.AbstractCache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.Expiring;
+import com.wiley.cache.RemovalListener;
+import com.wiley.cache.compression.Compressor;
+import com.wiley.cache.compression.Compressors;
+import com.wiley.cache.serializers.CompactSerializer;
+import com.wiley.cache.serializers.Serializer;
+import com.wiley.cache.serializers.Serializers;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Cache which stores every entry in its own file {@code <cacheDirectory>/<keyClass>/<keyHash>}.
+ * The file holds the length of the value, the value, the key, the expiration times after write and effective
+ * (wall clock milliseconds) if the entry expires, a flag telling whether it does and the access time,
+ * keys and values are encoded with the configured {@link Serializer}s.
+ * <p>
+ * With {@code cache.file.compression} set to {@code lz} or {@code deflate} values of at least
+ * {@code cache.file.compression.threshold} bytes are compressed when that makes them smaller. The highest bit
+ * of the length of a compressed value is set and a header byte identifies the {@link Compressor}, so compressed
+ * and plain records coexist and files written before compression was enabled stay readable.
+ * <p>
+ * Expired entries are reclaimed when they are read and by a background sweeper driven by a {@link TimerWheel}
+ * of the entries written by this instance or restored from the index snapshot.
+ * <p>
+ * On close and periodically the counters, the key class directories with their modification times and the
+ * expiration timers are saved to an index snapshot, so a reopened cache does not have to scan every entry file.
+ * The snapshot is only used when the directories are unchanged since it was written.
+ * <p>
+ * A {@link CountingBloomFilter} of the entry files answers most lookups of absent keys without touching the disk.
+ * It assumes the cache is the only writer of its directory, disable it with {@code cache.file.filter=false}
+ * when several instances share one.
+ * <p>
+ * In write-behind mode puts and removes are queued in memory and written by a background thread,
+ * repeated writes of a key are coalesced and reads see queued writes. {@link #flush()} waits for the queue.
+ */
+public class FileCache<K, V> extends AbstractCache<K, V> implements Expiring<K, V>, Closeable {
+
+    private final static Logger logger = Logger.getLogger(FileCache.class.getName());
+    
+    private final static String fileSeparator = System.getProperty("file.separator");
+    public static final String FILES_LIMIT = "cache.file.limit.files";
+    public static final String SIZE_LIMIT = "cache.file.limit.size";
+    public static final String CACHE_PATH = "cache.file.path";
+    public static final String WRITE_BEHIND = "cache.file.write.behind";
+    public static final String WRITE_BEHIND_QUEUE = "cache.file.write.behind.queue";
+    public static final String SWEEP_INTERVAL = "cache.file.sweep.interval";
+    public static final String SNAPSHOT_INTERVAL = "cache.file.snapshot.interval";
+    public static final String FILTER = "cache.file.filter";
+    public static final String COMPRESSION = "cache.file.compression";
+    public static final String COMPRESSION_THRESHOLD = "cache.file.compression.threshold";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int ACCESS_TIME_OFFSET = 8;
+    private static final int EXPIRING_OFFSET = 9;
+    private static final int EXPIRATION_TIME_OFFSET = 17;
+    private static final int WRITE_EXPIRATION_TIME_OFFSET = 25;
+    private static final Object EXPIRED = new Object();
+    private static final int COMPRESSED = 0x80000000;
+    // header byte and original length
+    private static final int COMPRESSION_HEADER = 5;
+
+    private static final String SNAPSHOT_FILE = "index.snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x46434958;
+    private static final int SNAPSHOT_VERSION = 2;
+    // modification times of directories may be truncated to seconds
+    private static final long MODIFICATION_TIME_GRANULARITY = 2000;
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "file-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "file-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private File cacheDirectory;
+
+    private int sizeLimit;
+
+    private String cacheId;
+    private int filesSize;
+    private int size;
+
+    private boolean writeBehind;
+    private int queueLimit;
+    private final Map<File, Write> pending = new LinkedHashMap<>();
+    private final Condition drained = writeLock.newCondition();
+    private boolean drainScheduled;
+
+    private long sweepInterval;
+    private final Map<File, SimpleEntry<K, V>> timers = new HashMap<>();
+    private final TimerWheel timerWheel = new TimerWheel();
+    private ScheduledFuture<?> sweep;
+
+    private long snapshotInterval;
+    private ScheduledFuture<?> snapshotTask;
+    private boolean modified;
+    private long modificationTime;
+    private boolean cleanSnapshot;
+
+    private CountingBloomFilter filter;
+
+    private Compressor compressor;
+    private int compressionThreshold;
+
+    private Serializer<? super K> keySerializer = new CompactSerializer();
+    private Serializer<? super V> valueSerializer = new CompactSerializer();
+    private RemovalListener<? super K> removalListener;
+
+    public FileCache() {
+        open();
+    }
+
+    public FileCache(String cacheId) {
+        this.cacheId = cacheId;
+        open();
+    }
+
+    public FileCache(Properties props) {
+        super(props);
+        open();
+    }
+
+    public FileCache(Properties props, String cacheId) {
+        super(props);
+        this.cacheId = cacheId;
+        open();
+    }
+
+    protected void init() {
+        try {
+            this.limit = Math.max(0, Integer.parseInt(properties.getProperty(FILES_LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for files limit property", e);
+            this.limit = Integer.valueOf(defaultProperties.getProperty(FILES_LIMIT));
+        }
+        logger.info("Files limit set to " + limit);
+
+        try {
+            this.sizeLimit = Math.max(0, Integer.parseInt(properties.getProperty(SIZE_LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for size limit property", e);
+            this.sizeLimit = Integer.valueOf(defaultProperties.getProperty(SIZE_LIMIT));
+        }
+        logger.info("Size limit set to " + sizeLimit);
+
+        this.writeBehind = Boolean.parseBoolean(properties.getProperty(WRITE_BEHIND));
+        try {
+            this.queueLimit = Math.max(1, Integer.parseInt(properties.getProperty(WRITE_BEHIND_QUEUE)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for write behind queue property", e);
+            this.queueLimit = Integer.valueOf(defaultProperties.getProperty(WRITE_BEHIND_QUEUE));
+        }
+        if (writeBehind) {
+            logger.info("Write behind enabled, queue limit set to " + queueLimit);
+        }
+
+        initExpiration();
+        try {
+            this.sweepInterval = Math.max(0, Long.parseLong(properties.getProperty(SWEEP_INTERVAL)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for sweep interval property", e);
+            this.sweepInterval = Long.valueOf(defaultProperties.getProperty(SWEEP_INTERVAL));
+        }
+        try {
+            this.snapshotInterval = Math.max(0, Long.parseLong(properties.getProperty(SNAPSHOT_INTERVAL)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for snapshot interval property", e);
+            this.snapshotInterval = Long.valueOf(defaultProperties.getProperty(SNAPSHOT_INTERVAL));
+        }
+        try {
+            this.compressor = Compressors.forName(properties.getProperty(COMPRESSION));
+        } catch(IllegalArgumentException e) {
+            logger.log(Level.WARNING, "wrong value for compression property", e);
+            this.compressor = Compressors.forName(defaultProperties.getProperty(COMPRESSION));
+        }
+        try {
+            this.compressionThreshold = Math.max(0, Integer.parseInt(properties.getProperty(COMPRESSION_THRESHOLD)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for compression threshold property", e);
+            this.compressionThreshold = Integer.valueOf(defaultProperties.getProperty(COMPRESSION_THRESHOLD));
+        }
+        if (Boolean.parseBoolean(properties.getProperty(FILTER))) {
+            this.filter = new CountingBloomFilter(limit);
+        }
+    }
+
+    /**
+     * Opens the cache directory, restoring the counters from the index snapshot or scanning the entry files.
+     * Called by the constructors once {@code cacheId} is known.
+     */
+    private void open() {
+        File pathDirectory = getPathDirectory(properties);
+
+        if (cacheId == null) {
+            cacheId = UUID.randomUUID().toString();
+        }
+
+        cacheDirectory = new File(pathDirectory.getPath() + fileSeparator + "cache" + fileSeparator + cacheId);
+        if (!cacheDirectory.exists()) {
+            if (!cacheDirectory.mkdirs()) {
+                throw new CacheException("Cannot create cache directory");
+            }
+        }
+        logger.info("File cache path set to " + cacheDirectory.getPath());
+
+        if (readSnapshot()) {
+            logger.info("Index snapshot restored, " + size + " entries");
+        } else {
+            int _size = 0;
+            for (File dir : listDirectories()) {
+                for (File cacheEntry : dir.listFiles()) {
+                    if (cacheEntry.getName().endsWith(TEMP_SUFFIX)) {
+                        // left by an interrupted write
+                        cacheEntry.delete();
+                        continue;
+                    }
+                    _size += cacheEntry.length();
+                    size++;
+                    filterAdd(cacheEntry);
+                }
+            }
+            filesSize = _size;
+        }
+    }
+
+    private File[] listDirectories() {
+        File[] directories = cacheDirectory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory();
+            }
+        });
+        return directories == null ? new File[0] : directories;
+    }
+    
+    static File getPathDirectory(Properties properties) {
+        File pathDirectory = getCacheDirectory(properties.getProperty(CACHE_PATH));
+        if (pathDirectory == null) {
+            pathDirectory = getCacheDirectory(defaultProperties.getProperty(CACHE_PATH));
+            if (pathDirectory == null) {
+                pathDirectory = getTempDirectory();
+            }
+        }
+        return pathDirectory;
+    }
+
+    private static File getCacheDirectory(String path) {
+        if (!path.isEmpty()) {
+            File directory = new File(path);
+            if (!directory.exists() && !directory.mkdir()) {
+                logger.log(Level.SEVERE, "cannot create path directory");
+            } else if (!(directory.canRead() && directory.canWrite())) {
+                logger.log(Level.SEVERE, "cache path should be readable and writable");
+            } else {
+                return directory;
+            }
+        }
+        return null;
+    }
+    
+    private static File getTempDirectory() {
+        File tempDirectory = new File(System.getProperty("java.io.tmpdir"));
+        if (!(tempDirectory.exists() && tempDirectory.canRead() && tempDirectory.canWrite())) {
+            throw new CacheException("temp folder should be readable and writable");
+        }
+        return tempDirectory;
+    }
+
+    public int filesSize() {
+        try {
+            readLock.lock();
+            return filesSize;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        try {
+            readLock.lock();
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        try {
+            readLock.lock();
+            File file = getFile(key);
+            if (!mightExist(file)) {
+                return false;
+            }
+            SimpleEntry<K, V> timer = timers.get(file);
+            if (timer != null && timer.isExpired(System.nanoTime())) {
+                return false;
+            }
+            Write write = pending.get(file);
+            if (write != null) {
+                return write.value != null;
+            }
+            return file.exists();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        throw new UnsupportedOperationException("This operation is not implemented yet");
+    }
+
+    public SimpleEntry<K, V> getEntry(Class<?> cls, int keyHash) {
+        DataInputStream is = null;
+        SimpleEntry<K, V> entry;
+        try {
+            readLock.lock();
+            File file = getFile(cls, keyHash);
+            if (!mightExist(file)) {
+                return null;
+            }
+            Write write = pending.get(file);
+            if (write != null) {
+                if (write.value == null || isExpired(write.expirationTime, System.currentTimeMillis())) {
+                    return null;
+                }
+                entry = new SimpleEntry<>(write.key, write.value);
+                entry.setLastAccessTime(write.accessTime);
+                return entry;
+            }
+            if (!(file.exists() && file.canRead())) {
+                return null;
+            }
+            ByteArrayInputStream bytes = new ByteArrayInputStream(Files.readAllBytes(file.toPath()));
+            is = new DataInputStream(bytes);
+
+            Object value = decodeValue(is);
+            Object key = keySerializer.read(is);
+            if (bytes.available() == WRITE_EXPIRATION_TIME_OFFSET) {
+                is.readLong();
+                if (isExpired(is.readLong(), System.currentTimeMillis())) {
+                    return null;
+                }
+            }
+            is.readBoolean();
+            entry = new SimpleEntry<>((K) key, (V) value);
+            entry.setLastAccessTime(is.readLong());
+            return entry;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Cannot read value", e);
+        } finally {
+            readLock.unlock();
+            try {
+                is.close();
+            } catch (NullPointerException | IOException ignored) {}
+        }
+        return null;
+    }
+    
+    @Override
+    public SimpleEntry<K, V> getEntry(Object key) {
+        return getEntry(key.getClass(), key.hashCode());
+    }
+
+    private boolean writeCache(K entryKey, V entryValue, long writeExpirationTime, long expirationTime,
+                               long accessTime, File file) {
+        return writeCache(Serializers.toBytes(keySerializer, entryKey), Serializers.toBytes(valueSerializer, entryValue),
+                writeExpirationTime, expirationTime, accessTime, file);
+    }
+
+    private boolean writeCache(byte[] key, byte[] value, long writeExpirationTime, long expirationTime,
+                               long accessTime, File file) {
+        DataOutputStream os = null;
+        try {
+            os = new DataOutputStream(
+                    new BufferedOutputStream(
+                            new FileOutputStream(file)));
+
+            encodeValue(value, os);
+            os.write(key);
+            boolean expiring = writeExpirationTime != 0 || expirationTime != 0;
+            if (expiring) {
+                os.writeLong(writeExpirationTime);
+                os.writeLong(expirationTime);
+            }
+            os.writeBoolean(expiring);
+            os.writeLong(accessTime);
+            os.flush();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Cannot write cache entry", e);
+            return false;
+        } finally {
+            try {
+                os.close();
+            } catch (NullPointerException | IOException ignored) {}
+        }
+        return true;
+    }
+
+    /**
+     * Reads only the value of the entry and updates its access time in place,
+     * the expiration and access times are the last longs of the entry file.
+     * An expired entry is removed.
+     */
+    public V get(Class<?> cls, int keyHash) {
+        long start = stats.start();
+        V value = read(cls, keyHash);
+        stats.recordGet(start, value != null);
+        return value;
+    }
+
+    private V read(Class<?> cls, int keyHash) {
+        File file;
+        Object value;
+        try {
+            readLock.lock();
+            file = getFile(cls, keyHash);
+            value = lookup(file, System.currentTimeMillis());
+        } finally {
+            readLock.unlock();
+        }
+        if (value == EXPIRED) {
+            reclaim(file);
+            return null;
+        }
+        return asValue(value);
+    }
+
+    /**
+     * Value of the entry stored in the file, {@code null} if there is none or {@link #EXPIRED} if the expired
+     * file has to be reclaimed. Called under the read lock.
+     */
+    private Object lookup(File file, long now) {
+        if (!mightExist(file)) {
+            return null;
+        }
+        Write write = pending.get(file);
+        if (write != null) {
+            if (write.value == null || isExpired(write.expirationTime, now)) {
+                return null;
+            }
+            write.accessTime = System.nanoTime();
+            if (expireAfterAccess > 0) {
+                write.expirationTime = earliest(write.writeExpirationTime, now + toMillis(expireAfterAccess));
+                extendTimer(file, write.expirationTime, now);
+            }
+            return write.value;
+        }
+        if (!(file.exists() && file.canRead())) {
+            return null;
+        }
+        return touch(file, now) ? readValue(file) : EXPIRED;
+    }
+
+    /**
+     * Reads the entries under a single acquisition of the read lock, in the order of their files.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        List<File> expired = new ArrayList<>();
+        int misses = 0;
+        try {
+            readLock.lock();
+            long now = System.currentTimeMillis();
+            for (Map.Entry<File, K> entry : sortByFile(keys)) {
+                Object value = lookup(entry.getKey(), now);
+                if (value == EXPIRED) {
+                    expired.add(entry.getKey());
+                    misses++;
+                } else if (value != null) {
+                    values.put(entry.getValue(), asValue(value));
+                } else {
+                    misses++;
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        for (File file : expired) {
+            reclaim(file);
+        }
+        stats.recordGets(values.size(), misses);
+        return values;
+    }
+
+    /**
+     * Value returned by {@link #lookup}, which is neither {@code null} nor {@link #EXPIRED}.
+     */
+    @SuppressWarnings("unchecked")
+    private V asValue(Object value) {
+        return (V) value;
+    }
+
+    /**
+     * Key passed to a method of the map interface which is found in the cache, so it is one of its keys.
+     */
+    @SuppressWarnings("unchecked")
+    private K asKey(Object key) {
+        return (K) key;
+    }
+
+    /**
+     * Files of the keys in the order of their paths, so the entries of a key class directory are accessed together.
+     */
+    private List<Map.Entry<File, K>> sortByFile(Collection<? extends K> keys) {
+        List<Map.Entry<File, K>> files = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            files.add(new AbstractMap.SimpleImmutableEntry<>(getFile(key), key));
+        }
+        Collections.sort(files, new Comparator<Map.Entry<File, K>>() {
+            @Override
+            public int compare(Map.Entry<File, K> entry, Map.Entry<File, K> other) {
+                return entry.getKey().compareTo(other.getKey());
+            }
+        });
+        return files;
+    }
+
+    private V readValue(File file) {
+        DataInputStream is = null;
+        try {
+            is = new DataInputStream(
+                    new BufferedInputStream(
+                            new FileInputStream(file)));
+            return decodeValue(is);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Cannot read value", e);
+            return null;
+        } finally {
+            try {
+                is.close();
+            } catch (NullPointerException | IOException ignored) {}
+        }
+    }
+
+    /**
+     * Writes the length and the bytes of the value, compressed if it is long enough and gets smaller.
+     */
+    private void encodeValue(byte[] value, DataOutputStream os) throws IOException {
+        if (compressor != null && value.length >= compressionThreshold) {
+            byte[] compressed = compressor.compress(value);
+            int length = COMPRESSION_HEADER + compressed.length;
+            if (length < value.length) {
+                stats.recordCompression(value.length, length);
+                os.writeInt(length | COMPRESSED);
+                os.writeByte(compressor.getId());
+                os.writeInt(value.length);
+                os.write(compressed);
+                return;
+            }
+            stats.recordCompression(value.length, value.length);
+        }
+        os.writeInt(value.length);
+        os.write(value);
+    }
+
+    /**
+     * Reads the value written by {@link #encodeValue}, whatever compression it was written with.
+     */
+    private V decodeValue(DataInputStream is) throws IOException {
+        int length = is.readInt();
+        DataInputStream valueStream = is;
+        if ((length & COMPRESSED) != 0) {
+            Compressor recordCompressor;
+            try {
+                recordCompressor = Compressors.forId(is.readByte());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e);
+            }
+            int originalLength = is.readInt();
+            byte[] compressed = new byte[(length & ~COMPRESSED) - COMPRESSION_HEADER];
+            is.readFully(compressed);
+            byte[] bytes = recordCompressor.decompress(compressed, originalLength);
+            valueStream = new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+        @SuppressWarnings("unchecked")
+        V value = (V) valueSerializer.read(valueStream);
+        return value;
+    }
+
+    /**
+     * Updates the access time and extends the expiration after access in place,
+     * returns {@code false} without touching the file if the entry expired.
+     */
+    private boolean touch(File file, long now) {
+        try (RandomAccessFile accessFile = new RandomAccessFile(file, "rw")) {
+            long length = accessFile.length();
+            accessFile.seek(length - EXPIRING_OFFSET);
+            if (accessFile.readBoolean()) {
+                accessFile.seek(length - WRITE_EXPIRATION_TIME_OFFSET);
+                long writeExpirationTime = accessFile.readLong();
+                long expirationTime = accessFile.readLong();
+                if (isExpired(expirationTime, now)) {
+                    return false;
+                }
+                if (expireAfterAccess > 0) {
+                    expirationTime = earliest(writeExpirationTime, now + toMillis(expireAfterAccess));
+                    accessFile.seek(length - EXPIRATION_TIME_OFFSET);
+                    accessFile.writeLong(expirationTime);
+                    extendTimer(file, expirationTime, now);
+                }
+            }
+            accessFile.seek(length - ACCESS_TIME_OFFSET);
+            accessFile.writeLong(System.nanoTime());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot update access time", e);
+        }
+        return true;
+    }
+
+    /**
+     * Expiration time in wall clock milliseconds stored in the file, zero if the entry never expires.
+     */
+    private long readExpirationTime(File file) {
+        try (RandomAccessFile accessFile = new RandomAccessFile(file, "r")) {
+            long length = accessFile.length();
+            accessFile.seek(length - EXPIRING_OFFSET);
+            if (!accessFile.readBoolean()) {
+                return 0;
+            }
+            accessFile.seek(length - EXPIRATION_TIME_OFFSET);
+            return accessFile.readLong();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot read expiration time", e);
+            return 0;
+        }
+    }
+
+    private static boolean isExpired(long expirationTime, long now) {
+        return expirationTime != 0 && expirationTime <= now;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public V get(Object key) {
+        return get(key.getClass(), key.hashCode());
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, -1, true);
+    }
+
+    @Override
+    public V put(K key, V value, long duration, TimeUnit unit) {
+        return put(key, value, unit.toMillis(Math.max(0, duration)), true);
+    }
+
+    /**
+     * Writes the entry, the current value is only read when {@code returnCurrent} is set.
+     */
+    private V put(K key, V value, long duration, boolean returnCurrent) {
+        if (key == null  || value == null) {
+            throw new NullPointerException("Key and value cannot be null");
+        }
+        long start = stats.start();
+        // a queued entry is serialized here, so the size of its file is known before it is written
+        byte[] keyBytes = writeBehind ? Serializers.toBytes(keySerializer, key) : null;
+        byte[] valueBytes = writeBehind ? Serializers.toBytes(valueSerializer, value) : null;
+        try {
+            writeLock.lock();
+
+            File file = getFile(key);
+            if (writeBehind) {
+                awaitCapacity(file);
+            }
+            Write write = pending.get(file);
+            boolean exists = write != null ? write.value != null : mightExist(file) && file.exists();
+
+            if (!exists && size >= limit) {
+                throw new CacheException("Files limit is exceeded");
+            }
+
+            if (filesSize >= sizeLimit) {
+                throw new CacheException("Files size is exceeded");
+            }
+
+            long now = System.currentTimeMillis();
+            V currentValue = null;
+            long currentLength = 0;
+            if (write != null) {
+                if (!isExpired(write.expirationTime, now)) {
+                    currentValue = write.value;
+                }
+            } else if (exists) {
+                if (returnCurrent && !isExpired(readExpirationTime(file), now)) {
+                    currentValue = readValue(file);
+                }
+                currentLength = file.length();
+            }
+
+            File directory = file.getParentFile();
+            if (!exists && !directory.isDirectory() && !directory.mkdir()) {
+                throw new CacheException("Cannot create cache key directory");
+            }
+
+            long afterWrite = duration < 0 ? toMillis(expireAfterWrite) : duration;
+            long writeExpirationTime = afterWrite > 0 ? now + afterWrite : 0;
+            long expirationTime = earliest(writeExpirationTime, expireAfterAccess > 0 ? now + toMillis(expireAfterAccess) : 0);
+            schedule(file, expirationTime, now);
+            modified();
+
+            if (writeBehind) {
+                Write queued = new Write(key, value, keyBytes, valueBytes, writeExpirationTime, expirationTime,
+                        System.nanoTime());
+                pending.put(file, queued);
+                filesSize += queued.length() - (write != null ? write.length() : currentLength);
+                if (!exists) {
+                    size++;
+                    filterAdd(file);
+                }
+                scheduleDrain();
+                stats.recordPut(start);
+                return currentValue;
+            }
+
+            // replaced by a move, so the modification time of the directory tells the entry changed
+            File temp = new File(file.getPath() + TEMP_SUFFIX);
+            if (!writeCache(key, value, writeExpirationTime, expirationTime, System.nanoTime(), temp) || !move(temp, file)) {
+                temp.delete();
+                throw new CacheException("Cannot write cache entry");
+            }
+            filesSize += file.length() - currentLength;
+            if (!exists) {
+                size++;
+                filterAdd(file);
+            }
+            stats.recordPut(start);
+            return currentValue;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        return remove(key, true);
+    }
+
+    /**
+     * Removes the entry, its value is only read when {@code returnCurrent} is set.
+     */
+    private V remove(Object key, boolean returnCurrent) {
+        try {
+            writeLock.lock();
+            File entryFile = getFile(key);
+            if (writeBehind) {
+                awaitCapacity(entryFile);
+            }
+            Write write = pending.get(entryFile);
+            if (write != null ? write.value == null : !(mightExist(entryFile) && entryFile.exists())) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            V value = null;
+            if (write != null) {
+                if (!isExpired(write.expirationTime, now)) {
+                    value = write.value;
+                }
+            } else if (returnCurrent && !isExpired(readExpirationTime(entryFile), now)) {
+                value = readValue(entryFile);
+            }
+            cancelTimer(entryFile);
+            modified();
+            if (writeBehind) {
+                filesSize -= write != null ? write.length() : entryFile.length();
+                if (entryFile.exists()) {
+                    pending.put(entryFile, new Write(asKey(key), null, 0, 0, 0));
+                    scheduleDrain();
+                } else {
+                    pending.remove(entryFile);
+                    drained.signalAll();
+                }
+                size--;
+                filterRemove(entryFile);
+                return value;
+            }
+            filesSize -= entryFile.length();
+            size--;
+            filterRemove(entryFile);
+            if (!entryFile.delete()) {
+                throw new CacheException("Cannot delete cache entry");
+            }
+            return value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the entries under a single acquisition of the write lock, in the order of their files,
+     * without reading the values they replace.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        try {
+            writeLock.lock();
+            for (Map.Entry<File, K> entry : sortByFile(map.keySet())) {
+                put(entry.getValue(), map.get(entry.getValue()), -1, false);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the entries under a single acquisition of the write lock, in the order of their files,
+     * without reading their values.
+     */
+    @Override
+    public void removeAll(Collection<?> keys) {
+        try {
+            writeLock.lock();
+            // the keys are only looked up
+            @SuppressWarnings("unchecked")
+            Collection<? extends K> cacheKeys = (Collection<? extends K>) keys;
+            for (Map.Entry<File, K> entry : sortByFile(cacheKeys)) {
+                remove(entry.getValue(), false);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            writeLock.lock();
+            pending.clear();
+            drained.signalAll();
+            timers.clear();
+            timerWheel.clear();
+            if (filter != null) {
+                filter.clear();
+            }
+            modified();
+            boolean success = true;
+            for (File entryClassDir : listDirectories()) {
+                for (File file : entryClassDir.listFiles()) {
+                    if (!file.delete()) {
+                        success = false;
+                    }
+                }
+            }
+            if (!success) throw new CacheException("Cannot delete cache files");
+            filesSize = 0;
+            size = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Keys read lazily from the files, the values are skipped over. The set is backed by the cache,
+     * its size is the one of the cache and may count expired entries which were not reclaimed yet.
+     */
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                final EntryIterator entries = new EntryIterator(false);
+                return new Iterator<K>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public K next() {
+                        return entries.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return FileCache.this.size();
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public boolean remove(Object key) {
+                return FileCache.this.remove(key) != null;
+            }
+        };
+    }
+
+    /**
+     * Values read lazily from the files, see {@link #keySet()}.
+     */
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                final EntryIterator entries = new EntryIterator(true);
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return entries.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return FileCache.this.size();
+            }
+        };
+    }
+
+    /**
+     * Entries read lazily from the files, see {@link #keySet()}. Setting the value of an entry doesn't change the cache.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                final EntryIterator entries = new EntryIterator(true);
+                return new Iterator<Map.Entry<K, V>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K, V> next() {
+                        SimpleEntry<K, V> entry = entries.next();
+                        return new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue());
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return FileCache.this.size();
+            }
+        };
+    }
+
+    /**
+     * Reads only the key of the entry, skipping over its value, {@code null} if there is none or it expired.
+     */
+    private K readKey(File file, long now) {
+        try {
+            readLock.lock();
+            Write write = pending.get(file);
+            if (write != null) {
+                return write.value == null || isExpired(write.expirationTime, now) ? null : write.key;
+            }
+            try (RandomAccessFile accessFile = new RandomAccessFile(file, "r")) {
+                long length = accessFile.length();
+                accessFile.seek(length - EXPIRING_OFFSET);
+                boolean expiring = accessFile.readBoolean();
+                if (expiring) {
+                    accessFile.seek(length - EXPIRATION_TIME_OFFSET);
+                    if (isExpired(accessFile.readLong(), now)) {
+                        return null;
+                    }
+                }
+                accessFile.seek(0);
+                long keyOffset = 4 + (accessFile.readInt() & ~COMPRESSED);
+                long keyLength = length - keyOffset - (expiring ? WRITE_EXPIRATION_TIME_OFFSET : EXPIRING_OFFSET);
+                byte[] key = new byte[(int) keyLength];
+                accessFile.seek(keyOffset);
+                accessFile.readFully(key);
+                return readKey(key);
+            }
+        } catch (FileNotFoundException e) {
+            // removed since the directory was listed
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Cannot read key", e);
+            return null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K readKey(byte[] bytes) {
+        return (K) Serializers.fromBytes(keySerializer, bytes);
+    }
+
+    /**
+     * Iterates over the entries file by file. The read lock is held only while a directory is listed or a file
+     * is read, so writers are not blocked for the whole scan and nothing has to be closed when it stops early.
+     * Entries with writes queued when the iteration starts are returned from the queue after the files.
+     * Without values the entries hold only the keys.
+     */
+    private class EntryIterator implements Iterator<SimpleEntry<K, V>> {
+        private final boolean withValues;
+        private final long now = System.currentTimeMillis();
+        private final Map<File, Write> writes;
+        private final File[] directories;
+        private Iterator<Write> queued;
+        private int directory;
+        private Class<?> keyClass;
+        private String[] names = new String[0];
+        private int name;
+        private SimpleEntry<K, V> next;
+        private K last;
+
+        private EntryIterator(boolean withValues) {
+            this.withValues = withValues;
+            try {
+                readLock.lock();
+                writes = new HashMap<>(pending);
+                directories = listDirectories();
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (name < names.length) {
+                    next = read(new File(directories[directory - 1], names[name++]));
+                } else if (directory < directories.length) {
+                    nextDirectory();
+                } else if (queued == null) {
+                    queued = writes.values().iterator();
+                } else if (queued.hasNext()) {
+                    Write write = queued.next();
+                    if (write.value != null && !isExpired(write.expirationTime, now)) {
+                        next = new SimpleEntry<>(write.key, withValues ? write.value : null);
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void nextDirectory() {
+            File dir = directories[directory++];
+            name = 0;
+            names = new String[0];
+            try {
+                keyClass = Class.forName(dir.getName());
+            } catch (ClassNotFoundException e) {
+                return;
+            }
+            String[] list;
+            try {
+                readLock.lock();
+                list = dir.list();
+            } finally {
+                readLock.unlock();
+            }
+            if (list != null) {
+                names = list;
+            }
+        }
+
+        private SimpleEntry<K, V> read(File file) {
+            if (file.getName().endsWith(TEMP_SUFFIX) || writes.containsKey(file)) {
+                return null;
+            }
+            if (withValues) {
+                try {
+                    return getEntry(keyClass, Integer.parseInt(file.getName()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            K key = readKey(file, now);
+            return key == null ? null : new SimpleEntry<>(key, (V) null);
+        }
+
+        @Override
+        public SimpleEntry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SimpleEntry<K, V> entry = next;
+            next = null;
+            last = entry.getKey();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            FileCache.this.remove(last);
+            last = null;
+        }
+    }
+
+    /**
+     * File of the entry, the key class directory is created by the put of the first key of the class.
+     */
+    private File getFile(Class cls, int keyHash) {
+        return new File(new File(cacheDirectory, cls.getName()), String.valueOf(keyHash));
+    }
+
+    /**
+     * File of the entry of any key, it is only hashed, so keys passed to the map methods need no cast.
+     */
+    private File getFile(Object key) {
+        return getFile(key.getClass(), key.hashCode());
+    }
+
+    /**
+     * Blocks until every queued write is on disk. Does nothing when write-behind is off.
+     * Must not be called while holding the read lock of this cache.
+     */
+    public void flush() {
+        try {
+            writeLock.lock();
+            while (!pending.isEmpty()) {
+                drained.awaitUninterruptibly();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            writeLock.lock();
+            if (sweep != null) {
+                sweep.cancel(false);
+                sweep = null;
+            }
+            if (snapshotTask != null) {
+                snapshotTask.cancel(false);
+                snapshotTask = null;
+            }
+            if (modified || !cleanSnapshot) {
+                writeSnapshot(true);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the expired entries whose timers are due, entries written by another instance of the cache
+     * directory are only reclaimed when they are read.
+     */
+    @Override
+    public void cleanUp() {
+        try {
+            writeLock.lock();
+            long now = System.currentTimeMillis();
+            for (SimpleEntry<K, V> timer : timerWheel.advance(System.nanoTime())) {
+                File file = ((Timer) timer).file;
+                if (timers.get(file) != timer) {
+                    continue;
+                }
+                Write write = pending.get(file);
+                long expirationTime = write != null ? write.expirationTime : readExpirationTime(file);
+                if (write == null && !file.exists() || write != null && write.value == null) {
+                    timers.remove(file);
+                } else if (isExpired(expirationTime, now)) {
+                    expire(file, write);
+                } else {
+                    schedule(file, expirationTime, now);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void reclaim(File file) {
+        try {
+            writeLock.lock();
+            Write write = pending.get(file);
+            if (write != null ? write.value != null && isExpired(write.expirationTime, System.currentTimeMillis())
+                    : file.exists() && isExpired(readExpirationTime(file), System.currentTimeMillis())) {
+                expire(file, write);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void expire(File file, Write write) {
+        // the key is read while the entry is still there
+        K key = removalListener != null ? readKey(file, 0) : null;
+        cancelTimer(file);
+        size--;
+        filterRemove(file);
+        stats.recordEviction();
+        modified();
+        if (write != null) {
+            filesSize -= write.length();
+            if (file.exists()) {
+                pending.put(file, new Write(write.key, null, 0, 0, 0));
+            } else {
+                pending.remove(file);
+                drained.signalAll();
+            }
+        } else {
+            long length = file.length();
+            if (file.delete()) {
+                filesSize -= length;
+            } else {
+                logger.log(Level.WARNING, "Cannot delete expired cache entry " + file.getName());
+            }
+        }
+        if (key != null) {
+            removalListener.onRemoval(key);
+        }
+    }
+
+    /**
+     * Schedules the timer of the entry at the given wall clock expiration time, converted to the
+     * {@link System#nanoTime()} clock of the wheel.
+     */
+    private void schedule(File file, long expirationTime, long now) {
+        if (expirationTime == 0) {
+            cancelTimer(file);
+            return;
+        }
+        SimpleEntry<K, V> timer = timers.get(file);
+        if (timer == null) {
+            timer = new Timer(file);
+            timers.put(file, timer);
+        }
+        timer.setExpirationTime(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(expirationTime - now));
+        timerWheel.schedule(timer);
+        scheduleSweep();
+    }
+
+    /**
+     * Moves the expiration time of a scheduled timer without rescheduling it,
+     * the wheel reschedules it when the old time is reached.
+     */
+    private void extendTimer(File file, long expirationTime, long now) {
+        SimpleEntry<K, V> timer = timers.get(file);
+        if (timer != null) {
+            timer.setExpirationTime(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(expirationTime - now));
+        }
+    }
+
+    private void cancelTimer(File file) {
+        SimpleEntry<K, V> timer = timers.remove(file);
+        if (timer != null) {
+            timerWheel.cancel(timer);
+        }
+    }
+
+    private void scheduleSweep() {
+        if (sweep == null && sweepInterval > 0) {
+            sweep = sweeper.scheduleWithFixedDelay(sweepTask(new WeakReference<FileCache<?, ?>>(this)),
+                    sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Whether the entry file may exist, {@code false} means it definitely does not.
+     */
+    private boolean mightExist(File file) {
+        return filter == null || filter.mightContain(fingerprint(file));
+    }
+
+    private void filterAdd(File file) {
+        if (filter != null) {
+            filter.add(fingerprint(file));
+        }
+    }
+
+    private void filterRemove(File file) {
+        if (filter != null) {
+            filter.remove(fingerprint(file));
+        }
+    }
+
+    private static long fingerprint(File file) {
+        return CountingBloomFilter.hash(file.getParentFile().getName().hashCode(), file.getName().hashCode());
+    }
+
+    /**
+     * Adds the entry files to an empty filter, only their names are listed.
+     */
+    private void rebuildFilter() {
+        if (filter == null) {
+            return;
+        }
+        for (File directory : listDirectories()) {
+            for (String name : directory.list()) {
+                if (!name.endsWith(TEMP_SUFFIX)) {
+                    filter.add(CountingBloomFilter.hash(directory.getName().hashCode(), name.hashCode()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Notes a change of the entry files, the next periodic snapshot is due and a snapshot written on close
+     * is no longer valid.
+     */
+    private void modified() {
+        modified = true;
+        modificationTime = System.currentTimeMillis();
+        if (cleanSnapshot) {
+            cleanSnapshot = false;
+            new File(cacheDirectory, SNAPSHOT_FILE).delete();
+        }
+        if (snapshotTask == null && snapshotInterval > 0) {
+            snapshotTask = sweeper.scheduleWithFixedDelay(snapshotTask(new WeakReference<FileCache<?, ?>>(this)),
+                    snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes a periodic snapshot if the cache was modified since the last one. It waits until the entry files
+     * have not changed for a while, so any later change gives a directory another modification time.
+     */
+    private void snapshot() {
+        try {
+            writeLock.lock();
+            if (modified && pending.isEmpty()
+                    && System.currentTimeMillis() - modificationTime > MODIFICATION_TIME_GRANULARITY) {
+                writeSnapshot(false);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the counters, the key class directories with their modification times and the expiration timers
+     * to the snapshot file. A clean snapshot is written on close, a periodic one may be followed by changes which
+     * are detected by the modification times. Called under the write lock with no queued writes.
+     */
+    private void writeSnapshot(boolean clean) {
+        File snapshot = new File(cacheDirectory, SNAPSHOT_FILE);
+        File temp = new File(cacheDirectory, SNAPSHOT_FILE + TEMP_SUFFIX);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream os = new DataOutputStream(bytes);
+            os.writeInt(SNAPSHOT_MAGIC);
+            os.writeInt(SNAPSHOT_VERSION);
+            os.writeBoolean(clean);
+            os.writeInt(size);
+            os.writeInt(filesSize);
+            File[] directories = listDirectories();
+            os.writeInt(directories.length);
+            for (File directory : directories) {
+                os.writeUTF(directory.getName());
+                os.writeLong(directory.lastModified());
+            }
+            long now = System.currentTimeMillis();
+            long nanoTime = System.nanoTime();
+            os.writeInt(timers.size());
+            for (Map.Entry<File, SimpleEntry<K, V>> timer : timers.entrySet()) {
+                os.writeUTF(timer.getKey().getParentFile().getName());
+                os.writeUTF(timer.getKey().getName());
+                os.writeLong(now + toMillis(timer.getValue().getExpirationTime() - nanoTime));
+            }
+            os.writeBoolean(filter != null);
+            if (filter != null) {
+                filter.write(os);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            os.writeLong(crc.getValue());
+            os.flush();
+            Files.write(temp.toPath(), bytes.toByteArray());
+            if (move(temp, snapshot)) {
+                modified = false;
+                cleanSnapshot = clean;
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot write index snapshot", e);
+            temp.delete();
+        }
+    }
+
+    /**
+     * Restores the counters and the expiration timers from the snapshot file. Returns {@code false} if there is
+     * no snapshot, it is damaged or a key class directory was added, removed or modified after it was written.
+     */
+    private boolean readSnapshot() {
+        File snapshot = new File(cacheDirectory, SNAPSHOT_FILE);
+        if (!snapshot.isFile()) {
+            return false;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(snapshot.toPath());
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, Math.max(0, bytes.length - 8));
+            DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (bytes.length < 8 || is.readInt() != SNAPSHOT_MAGIC || is.readInt() != SNAPSHOT_VERSION
+                    || ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+                logger.warning("Ignoring damaged index snapshot");
+                return false;
+            }
+            boolean clean = is.readBoolean();
+            int snapshotSize = is.readInt();
+            int snapshotFilesSize = is.readInt();
+            Map<String, Long> modificationTimes = new HashMap<>();
+            for (int i = is.readInt(); i > 0; i--) {
+                modificationTimes.put(is.readUTF(), is.readLong());
+            }
+            File[] directories = listDirectories();
+            if (directories.length != modificationTimes.size()) {
+                logger.info("Ignoring stale index snapshot");
+                return false;
+            }
+            for (File directory : directories) {
+                Long modificationTime = modificationTimes.get(directory.getName());
+                if (modificationTime == null || modificationTime != directory.lastModified()) {
+                    logger.info("Ignoring stale index snapshot");
+                    return false;
+                }
+            }
+            long now = System.currentTimeMillis();
+            for (int i = is.readInt(); i > 0; i--) {
+                File file = new File(new File(cacheDirectory, is.readUTF()), is.readUTF());
+                schedule(file, is.readLong(), now);
+            }
+            if (!(is.readBoolean() && filter != null && filter.read(is))) {
+                rebuildFilter();
+            }
+            size = snapshotSize;
+            filesSize = snapshotFilesSize;
+            cleanSnapshot = clean;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot read index snapshot", e);
+            timers.clear();
+            timerWheel.clear();
+            if (filter != null) {
+                filter.clear();
+            }
+            return false;
+        }
+    }
+
+    private static Runnable snapshotTask(final WeakReference<FileCache<?, ?>> reference) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                FileCache<?, ?> cache = reference.get();
+                if (cache == null) {
+                    throw new IllegalStateException("File cache was collected");
+                }
+                cache.snapshot();
+            }
+        };
+    }
+
+    private static Runnable sweepTask(final WeakReference<FileCache<?, ?>> reference) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                FileCache<?, ?> cache = reference.get();
+                if (cache == null) {
+                    // stops the periodic task of a collected cache
+                    throw new IllegalStateException("File cache was collected");
+                }
+                cache.cleanUp();
+            }
+        };
+    }
+
+    /**
+     * Timer of an entry file, the wheel hands it back to {@link #cleanUp()}.
+     */
+    private class Timer extends SimpleEntry<K, V> {
+        private final File file;
+
+        private Timer(File file) {
+            super(null, null);
+            this.file = file;
+        }
+    }
+
+    private void awaitCapacity(File file) {
+        while (pending.size() >= queueLimit && !pending.containsKey(file)) {
+            drained.awaitUninterruptibly();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Writes queued entries to temporary files without holding the lock, then moves them in place under the
+     * write lock unless the entry was replaced, removed or cleared meanwhile.
+     */
+    private void drain() {
+        while (true) {
+            List<Map.Entry<File, Write>> batch;
+            try {
+                writeLock.lock();
+                if (pending.isEmpty()) {
+                    drainScheduled = false;
+                    drained.signalAll();
+                    return;
+                }
+                batch = new ArrayList<>(pending.size());
+                for (Map.Entry<File, Write> entry : pending.entrySet()) {
+                    batch.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            for (Map.Entry<File, Write> entry : batch) {
+                File file = entry.getKey();
+                Write write = entry.getValue();
+                File temp = null;
+                boolean written = false;
+                if (write.value != null) {
+                    temp = new File(file.getPath() + TEMP_SUFFIX);
+                    written = writeCache(write.keyBytes, write.valueBytes, write.writeExpirationTime,
+                            write.expirationTime, write.accessTime, temp);
+                }
+                try {
+                    writeLock.lock();
+                    if (pending.get(file) != write) {
+                        if (temp != null) {
+                            temp.delete();
+                        }
+                        continue;
+                    }
+                    pending.remove(file);
+                    modified();
+                    // the queued write was counted with the length of its file when it was queued
+                    if (write.value == null) {
+                        file.delete();
+                    } else if (written && move(temp, file)) {
+                        filesSize += file.length() - write.length();
+                    } else {
+                        logger.log(Level.SEVERE, "Dropping queued cache entry " + file.getName());
+                        temp.delete();
+                        filesSize -= write.length();
+                        if (!file.exists()) {
+                            size--;
+                            filterRemove(file);
+                        } else {
+                            // the previous version of the entry stays
+                            filesSize += file.length();
+                        }
+                    }
+                    drained.signalAll();
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        }
+    }
+
+    private boolean move(File source, File target) {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Cannot move cache entry in place", e);
+            return false;
+        }
+    }
+
+    public String getCacheId() {
+        return cacheId;
+    }
+
+    /**
+     * Sets the serializer of keys, {@link CompactSerializer} by default.
+     * Entries written with another serializer cannot be read any more.
+     */
+    public void setKeySerializer(Serializer<? super K> keySerializer) {
+        this.keySerializer = keySerializer;
+    }
+
+    /**
+     * Sets the serializer of values, {@link CompactSerializer} by default.
+     * Entries written with another serializer cannot be read any more.
+     */
+    public void setValueSerializer(Serializer<? super V> valueSerializer) {
+        this.valueSerializer = valueSerializer;
+    }
+
+    @Override
+    public void setRemovalListener(RemovalListener<? super K> removalListener) {
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * Entries read file by file, each of them once, see {@link #keySet()}.
+     */
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        List<Entry<K, V>> entries = new ArrayList<>();
+        Iterator<SimpleEntry<K, V>> iterator = new EntryIterator(true);
+        while (iterator.hasNext()) {
+            entries.add(iterator.next());
+        }
+        return entries;
+    }
+
+    /**
+     * Queued write, a {@code null} value stands for a removal.
+     */
+    private class Write {
+        private final K key;
+        private final V value;
+        private final byte[] keyBytes;
+        private final byte[] valueBytes;
+        private final long writeExpirationTime;
+        private long expirationTime;
+        private long accessTime;
+
+        private Write(K key, V value, long writeExpirationTime, long expirationTime, long accessTime) {
+            this(key, value, null, null, writeExpirationTime, expirationTime, accessTime);
+        }
+
+        private Write(K key, V value, byte[] keyBytes, byte[] valueBytes, long writeExpirationTime,
+                      long expirationTime, long accessTime) {
+            this.key = key;
+            this.value = value;
+            this.keyBytes = keyBytes;
+            this.valueBytes = valueBytes;
+            this.writeExpirationTime = writeExpirationTime;
+            this.expirationTime = expirationTime;
+            this.accessTime = accessTime;
+        }
+
+        /**
+         * Length of the file the write makes, compression may only make it shorter. Zero for a removal.
+         */
+        private long length() {
+            if (valueBytes == null) {
+                return 0;
+            }
+            boolean expiring = writeExpirationTime != 0 || expirationTime != 0;
+            return 4 + valueBytes.length + keyBytes.length + (expiring ? 16 : 0) + 1 + 8;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.Cache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.CacheLoader;
+import com.wiley.cache.stats.CacheStats;
+import com.wiley.cache.stats.StatsCounter;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Read-through wrapper of any cache. Missing values are loaded by a {@link CacheLoader} and stored in the cache,
+ * there is at most one load of a key in flight, concurrent callers wait for its result.
+ * Failed loads are not cached, the exception is rethrown to every waiting caller as {@link CacheException}.
+ * Loads are counted in the statistics when the wrapped cache records them,
+ * a {@link CacheLoader#loadAll(Collection)} call counts as one load.
+ */
+public class LoadingCache<K, V> implements Cache<K, V> {
+
+    private final Cache<K, V> cache;
+    private final CacheLoader<? super K, V> loader;
+    private final ConcurrentMap<K, FutureTask<V>> loads = new ConcurrentHashMap<>();
+    private final StatsCounter stats;
+
+    public LoadingCache(Cache<K, V> cache) {
+        this(cache, null);
+    }
+
+    public LoadingCache(Cache<K, V> cache, CacheLoader<? super K, V> loader) {
+        this.cache = cache;
+        this.loader = loader;
+        stats = cache.isStatsEnabled() ? new StatsCounter() : StatsCounter.DISABLED;
+    }
+
+    /**
+     * Returns the cached value or loads it with the loader of this cache.
+     */
+    public V getOrLoad(K key) {
+        return get(key, defaultLoader());
+    }
+
+    /**
+     * Returns the values of the keys loading the missing ones with the loader of this cache.
+     */
+    public Map<K, V> getOrLoadAll(Collection<? extends K> keys) {
+        return getAll(keys, defaultLoader());
+    }
+
+    /**
+     * Returns the cached value or loads it with the given loader.
+     */
+    public V get(final K key, final CacheLoader<? super K, V> loader) {
+        V value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        FutureTask<V> load = new FutureTask<>(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                // the key may have been loaded since the miss
+                V value = cache.get(key);
+                if (value == null) {
+                    long start = stats.start();
+                    try {
+                        value = loader.load(key);
+                    } catch (Exception | Error e) {
+                        stats.recordLoad(start, false);
+                        throw e;
+                    }
+                    stats.recordLoad(start, value != null);
+                    if (value != null) {
+                        cache.put(key, value);
+                    }
+                }
+                return value;
+            }
+        });
+        FutureTask<V> current = loads.putIfAbsent(key, load);
+        if (current == null) {
+            run(key, load);
+            current = load;
+        }
+        return await(key, current);
+    }
+
+    /**
+     * Returns the values of the keys, keys without a value are left out. The missing keys which are not being
+     * loaded by other callers are loaded with a single {@link CacheLoader#loadAll(Collection)} call.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys, CacheLoader<? super K, V> loader) {
+        Map<K, V> values = new LinkedHashMap<>();
+        Map<K, FutureTask<V>> claimed = new LinkedHashMap<>();
+        Map<K, FutureTask<V>> awaited = new LinkedHashMap<>();
+        final BulkLoad bulk = new BulkLoad();
+
+        Map<K, V> cached = cache.getAll(keys);
+        for (K key : keys) {
+            if (values.containsKey(key) || claimed.containsKey(key) || awaited.containsKey(key)) {
+                continue;
+            }
+            V value = cached.get(key);
+            if (value != null) {
+                values.put(key, value);
+                continue;
+            }
+            FutureTask<V> load = new FutureTask<>(bulk.callable(key));
+            FutureTask<V> current = loads.putIfAbsent(key, load);
+            if (current == null) {
+                claimed.put(key, load);
+            } else {
+                awaited.put(key, current);
+            }
+        }
+
+        if (!claimed.isEmpty()) {
+            try {
+                cached = cache.getAll(claimed.keySet());
+                for (K key : claimed.keySet()) {
+                    V value = cached.get(key);
+                    if (value != null) {
+                        bulk.values.put(key, value);
+                    } else {
+                        bulk.missing.add(key);
+                    }
+                }
+                if (!bulk.missing.isEmpty()) {
+                    long start = stats.start();
+                    Map<? super K, V> loaded;
+                    try {
+                        loaded = loader.loadAll(bulk.missing);
+                    } catch (Exception | Error e) {
+                        stats.recordLoad(start, false);
+                        throw e;
+                    }
+                    stats.recordLoad(start, true);
+                    for (K key : bulk.missing) {
+                        V value = loaded.get(key);
+                        if (value != null) {
+                            bulk.values.put(key, value);
+                        }
+                    }
+                }
+            } catch (Exception | Error e) {
+                bulk.error = e;
+            }
+            for (Map.Entry<K, FutureTask<V>> entry : claimed.entrySet()) {
+                run(entry.getKey(), entry.getValue());
+            }
+            awaited.putAll(claimed);
+        }
+
+        for (Map.Entry<K, FutureTask<V>> entry : awaited.entrySet()) {
+            V value = await(entry.getKey(), entry.getValue());
+            if (value != null) {
+                values.put(entry.getKey(), value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Number of loads in flight.
+     */
+    public int loadingCount() {
+        return loads.size();
+    }
+
+    private void run(K key, FutureTask<V> load) {
+        try {
+            load.run();
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    private V await(K key, FutureTask<V> load) {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while loading " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CacheException) {
+                throw (CacheException) cause;
+            }
+            throw new CacheException("Cannot load " + key, cause);
+        }
+    }
+
+    private CacheLoader<? super K, V> defaultLoader() {
+        if (loader == null) {
+            throw new IllegalStateException("No cache loader is set");
+        }
+        return loader;
+    }
+
+    /**
+     * Result of a {@link CacheLoader#loadAll(Collection)} call shared by the loads of its keys.
+     */
+    private class BulkLoad {
+        private final Set<K> missing = new LinkedHashSet<>();
+        private final Map<K, V> values = new HashMap<>();
+        private Throwable error;
+
+        private Callable<V> callable(final K key) {
+            return new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    if (error instanceof Exception) {
+                        throw (Exception) error;
+                    } else if (error != null) {
+                        throw (Error) error;
+                    }
+                    V value = values.get(key);
+                    if (value != null && missing.contains(key)) {
+                        cache.put(key, value);
+                    }
+                    return value;
+                }
+            };
+        }
+    }
+
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        return cache.getEntries();
+    }
+
+    @Override
+    public int getLimit() {
+        return cache.getLimit();
+    }
+
+    @Override
+    public Entry<K, V> getEntry(Object key) {
+        return cache.getEntry(key);
+    }
+
+    /**
+     * Statistics of the cache together with the loads of this wrapper.
+     */
+    @Override
+    public CacheStats getStats() {
+        return cache.getStats().plus(stats.snapshot());
+    }
+
+    @Override
+    public boolean isStatsEnabled() {
+        return stats.isEnabled();
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        return cache.getAll(keys);
+    }
+
+    @Override
+    public void removeAll(Collection<?> keys) {
+        cache.removeAll(keys);
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return cache.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return cache.containsValue(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return cache.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return cache.remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        cache.putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return cache.keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return cache.values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return cache.entrySet();
+    }
+}
@@ -0,0 +1,976 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.AbstractCache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.serializers.CompactSerializer;
+import com.wiley.cache.serializers.Serializer;
+import com.wiley.cache.serializers.Serializers;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * File cache which appends records to large segment files instead of writing one file per key.
+ * An in-memory index maps every key to the segment, offset and length of its latest record,
+ * removals are written as tombstones. Sealed segments with many dead records are compacted
+ * in the background by copying their live records to the active segment,
+ * so the segments stay within the {@code cache.file.limit.size} budget. A removal compacts to make room
+ * for its tombstone too, but is not refused when nothing can be reclaimed.
+ * <p>
+ * Record layout: {@code int length, int crc, byte type, long time, int keyLength, key, value},
+ * where {@code length} and {@code crc} cover everything after the crc.
+ * <p>
+ * With {@code cache.file.mmap} enabled values are read from read-only memory mapped windows
+ * of {@code cache.file.mmap.window} bytes, so hot reads are served from the page cache without a system call.
+ */
+public class LogFileCache<K, V> extends AbstractCache<K, V> implements Closeable {
+
+    private final static Logger logger = Logger.getLogger(LogFileCache.class.getName());
+
+    private final static String fileSeparator = System.getProperty("file.separator");
+    public static final String SEGMENT_SIZE = "cache.file.segment.size";
+    public static final String COMPACTION_RATIO = "cache.file.compaction.ratio";
+    public static final String MMAP = "cache.file.mmap";
+    public static final String MMAP_WINDOW = "cache.file.mmap.window";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+    private static final int BODY_HEADER_SIZE = 13;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "log-file-cache-compactor");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private File cacheDirectory;
+    private String cacheId;
+
+    private int sizeLimit;
+    private int segmentSize;
+    private double compactionRatio;
+    private boolean mmap;
+    private int mmapWindow;
+
+    private final Map<K, Location> index = new HashMap<>();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private long filesSize;
+    private boolean compactionScheduled;
+
+    private Serializer<? super K> keySerializer = new CompactSerializer();
+    private Serializer<? super V> valueSerializer = new CompactSerializer();
+    private boolean closed;
+
+    public LogFileCache() {
+        open();
+    }
+
+    public LogFileCache(String cacheId) {
+        this.cacheId = cacheId;
+        open();
+    }
+
+    public LogFileCache(Properties props) {
+        super(props);
+        open();
+    }
+
+    public LogFileCache(Properties props, String cacheId) {
+        super(props);
+        this.cacheId = cacheId;
+        open();
+    }
+
+    /**
+     * Creates a cache with custom serializers instead of the default {@link CompactSerializer}s.
+     * Existing segments are replayed with the key serializer, so it has to be the one they were written with.
+     */
+    public LogFileCache(Properties props, String cacheId, Serializer<? super K> keySerializer, Serializer<? super V> valueSerializer) {
+        super(props);
+        this.cacheId = cacheId;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        open();
+    }
+
+    @Override
+    protected void init() {
+        try {
+            this.limit = Math.max(0, Integer.parseInt(properties.getProperty(FileCache.FILES_LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for files limit property", e);
+            this.limit = Integer.valueOf(defaultProperties.getProperty(FileCache.FILES_LIMIT));
+        }
+        logger.info("Entries limit set to " + limit);
+
+        try {
+            this.sizeLimit = Math.max(0, Integer.parseInt(properties.getProperty(FileCache.SIZE_LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for size limit property", e);
+            this.sizeLimit = Integer.valueOf(defaultProperties.getProperty(FileCache.SIZE_LIMIT));
+        }
+        logger.info("Size limit set to " + sizeLimit);
+
+        try {
+            this.segmentSize = Math.max(1, Integer.parseInt(properties.getProperty(SEGMENT_SIZE)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for segment size property", e);
+            this.segmentSize = Integer.valueOf(defaultProperties.getProperty(SEGMENT_SIZE));
+        }
+        logger.info("Segment size set to " + segmentSize);
+
+        try {
+            this.compactionRatio = Double.parseDouble(properties.getProperty(COMPACTION_RATIO));
+        } catch(NumberFormatException | NullPointerException e) {
+            logger.log(Level.WARNING, "wrong value for compaction ratio property", e);
+            this.compactionRatio = Double.valueOf(defaultProperties.getProperty(COMPACTION_RATIO));
+        }
+
+        this.mmap = Boolean.parseBoolean(properties.getProperty(MMAP));
+        try {
+            this.mmapWindow = Math.max(1, Integer.parseInt(properties.getProperty(MMAP_WINDOW)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for mmap window property", e);
+            this.mmapWindow = Integer.valueOf(defaultProperties.getProperty(MMAP_WINDOW));
+        }
+        if (mmap) {
+            logger.info("Memory mapped reads enabled, window size set to " + mmapWindow);
+        }
+    }
+
+    /**
+     * Opens the segments of the cache directory and replays them into the index.
+     * Called by the constructors once {@code cacheId} is known.
+     */
+    private void open() {
+        if (cacheId == null) {
+            cacheId = UUID.randomUUID().toString();
+        }
+        File pathDirectory = FileCache.getPathDirectory(properties);
+        cacheDirectory = new File(pathDirectory.getPath() + fileSeparator + "cache" + fileSeparator + cacheId);
+        if (!cacheDirectory.exists()) {
+            if (!cacheDirectory.mkdirs()) {
+                throw new CacheException("Cannot create cache directory");
+            }
+        }
+        logger.info("Log file cache path set to " + cacheDirectory.getPath());
+
+        try {
+            for (File file : cacheDirectory.listFiles()) {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, new Segment(id, file));
+                }
+            }
+            for (Segment segment : segments.values()) {
+                replay(segment);
+                filesSize += segment.size;
+            }
+            if (segments.isEmpty()) {
+                roll();
+            } else {
+                active = segments.lastEntry().getValue();
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.log(Level.SEVERE, "cannot open cache segments", e);
+            throw new CacheException("Cannot open cache segments");
+        }
+    }
+
+    private void replay(Segment segment) throws IOException {
+        long nanoTime = System.nanoTime();
+        long time = System.currentTimeMillis();
+        RecordReader reader = new RecordReader(segment);
+        Record record;
+        while ((record = reader.next()) != null) {
+            K key = readKey(record.key);
+            Location previous;
+            if (record.type == PUT) {
+                long accessTime = nanoTime - (time - record.time) * 1000000L;
+                previous = index.put(key, new Location(segment, record.position, record.length, record.valueOffset(), accessTime));
+                segment.live += record.length;
+            } else {
+                previous = index.remove(key);
+            }
+            if (previous != null) {
+                previous.segment.live -= previous.length;
+            }
+        }
+        if (reader.position < segment.size) {
+            logger.warning("Truncating damaged tail of segment " + segment.file.getName() + " at " + reader.position);
+            segment.channel.truncate(reader.position);
+            segment.size = reader.position;
+        }
+    }
+
+    public long filesSize() {
+        try {
+            readLock.lock();
+            return filesSize;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        try {
+            readLock.lock();
+            return index.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        try {
+            readLock.lock();
+            return index.containsKey(key);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        throw new UnsupportedOperationException("This operation is not implemented yet");
+    }
+
+    @Override
+    public V get(Object key) {
+        long start = stats.start();
+        try {
+            readLock.lock();
+            Location location = index.get(key);
+            if (location == null) {
+                stats.recordGet(start, false);
+                return null;
+            }
+            location.accessTime = System.nanoTime();
+            V value = readValue(location);
+            stats.recordGet(start, value != null);
+            return value;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public SimpleEntry<K, V> getEntry(Object key) {
+        try {
+            readLock.lock();
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            SimpleEntry<K, V> entry = new SimpleEntry<>(asKey(key), readValue(location));
+            entry.setLastAccessTime(location.accessTime);
+            return entry;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null  || value == null) {
+            throw new NullPointerException("Key and value cannot be null");
+        }
+        long start = stats.start();
+        try {
+            writeLock.lock();
+            ensureOpen();
+            Location previous = index.get(key);
+            if (previous == null && index.size() >= limit) {
+                throw new CacheException("Files limit is exceeded");
+            }
+            byte[] keyBytes = Serializers.toBytes(keySerializer, key);
+            byte[] record = createRecord(PUT, keyBytes, Serializers.toBytes(valueSerializer, value));
+            V currentValue = previous == null ? null : readValue(previous);
+            reserve(record.length);
+            // compaction may have moved the previous record
+            previous = index.get(key);
+
+            Location location = append(record, HEADER_SIZE + BODY_HEADER_SIZE + keyBytes.length);
+            location.segment.live += location.length;
+            index.put(key, location);
+            if (previous != null) {
+                previous.segment.live -= previous.length;
+            }
+            scheduleCompaction();
+            stats.recordPut(start);
+            return currentValue;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        try {
+            writeLock.lock();
+            ensureOpen();
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            V value = readValue(location);
+            byte[] record = createRecord(REMOVE, keyBytes(key), new byte[0]);
+            makeRoom(record.length);
+            append(record, record.length);
+            // compaction may have moved the record
+            location = index.remove(key);
+            location.segment.live -= location.length;
+            scheduleCompaction();
+            return value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the records in the order of their positions in the segments under a single acquisition of the read lock.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        int misses = 0;
+        try {
+            readLock.lock();
+            List<Map.Entry<K, Location>> locations = new ArrayList<>(keys.size());
+            for (K key : keys) {
+                Location location = index.get(key);
+                if (location == null) {
+                    misses++;
+                } else {
+                    locations.add(new AbstractMap.SimpleImmutableEntry<>(key, location));
+                }
+            }
+            Collections.sort(locations, new Comparator<Map.Entry<K, Location>>() {
+                @Override
+                public int compare(Map.Entry<K, Location> entry, Map.Entry<K, Location> other) {
+                    Location location = entry.getValue();
+                    Location otherLocation = other.getValue();
+                    if (location.segment.id != otherLocation.segment.id) {
+                        return location.segment.id < otherLocation.segment.id ? -1 : 1;
+                    }
+                    return Long.compare(location.position, otherLocation.position);
+                }
+            });
+            long now = System.nanoTime();
+            for (Map.Entry<K, Location> entry : locations) {
+                entry.getValue().accessTime = now;
+                V value = readValue(entry.getValue());
+                if (value != null) {
+                    values.put(entry.getKey(), value);
+                } else {
+                    misses++;
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        stats.recordGets(values.size(), misses);
+        return values;
+    }
+
+    /**
+     * Appends the records of all entries with one gathering write per segment they land in,
+     * under a single acquisition of the write lock. Nothing is written if the entries do not fit.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        try {
+            writeLock.lock();
+            ensureOpen();
+            List<K> keys = new ArrayList<>(map.size());
+            List<byte[]> records = new ArrayList<>(map.size());
+            List<Integer> valueOffsets = new ArrayList<>(map.size());
+            int added = 0;
+            long batchSize = 0;
+            for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    throw new NullPointerException("Key and value cannot be null");
+                }
+                if (!index.containsKey(entry.getKey())) {
+                    added++;
+                }
+                byte[] keyBytes = Serializers.toBytes(keySerializer, entry.getKey());
+                byte[] record = createRecord(PUT, keyBytes, Serializers.toBytes(valueSerializer, entry.getValue()));
+                keys.add(entry.getKey());
+                records.add(record);
+                valueOffsets.add(HEADER_SIZE + BODY_HEADER_SIZE + keyBytes.length);
+                batchSize += record.length;
+            }
+            if (index.size() + added > limit) {
+                throw new CacheException("Files limit is exceeded");
+            }
+            reserve(batchSize);
+
+            List<Location> locations = appendAll(records, valueOffsets);
+            for (int i = 0; i < keys.size(); i++) {
+                Location location = locations.get(i);
+                location.segment.live += location.length;
+                Location previous = index.put(keys.get(i), location);
+                if (previous != null) {
+                    previous.segment.live -= previous.length;
+                }
+            }
+            scheduleCompaction();
+            stats.recordPuts(keys.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the tombstones of all present keys with one gathering write per segment they land in.
+     */
+    @Override
+    public void removeAll(Collection<?> keys) {
+        try {
+            writeLock.lock();
+            ensureOpen();
+            List<Object> removed = new ArrayList<>();
+            long batchSize = 0;
+            List<byte[]> records = new ArrayList<>();
+            List<Integer> valueOffsets = new ArrayList<>();
+            for (Object key : new LinkedHashSet<>(keys)) {
+                if (index.containsKey(key)) {
+                    byte[] record = createRecord(REMOVE, keyBytes(key), new byte[0]);
+                    removed.add(key);
+                    records.add(record);
+                    valueOffsets.add(record.length);
+                    batchSize += record.length;
+                }
+            }
+            if (removed.isEmpty()) {
+                return;
+            }
+            makeRoom(batchSize);
+            appendAll(records, valueOffsets);
+            for (Object key : removed) {
+                Location location = index.remove(key);
+                location.segment.live -= location.length;
+            }
+            scheduleCompaction();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            writeLock.lock();
+            ensureOpen();
+            for (Segment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            index.clear();
+            filesSize = 0;
+            roll();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "cannot clear cache segments", e);
+            throw new CacheException("Cannot delete cache files");
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        try {
+            readLock.lock();
+            return new HashSet<>(index.keySet());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<V> values() {
+        try {
+            readLock.lock();
+            Collection<V> collection = new ArrayList<>();
+            for (Location location : index.values()) {
+                collection.add(readValue(location));
+            }
+            return collection;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        try {
+            readLock.lock();
+            Set<Map.Entry<K, V>> set = new HashSet<>();
+            for (Map.Entry<K, Location> entry : index.entrySet()) {
+                set.add(new AbstractMap.SimpleEntry<>(entry.getKey(), readValue(entry.getValue())));
+            }
+            return set;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        try {
+            readLock.lock();
+            List<Entry<K, V>> entries = new ArrayList<>();
+            for (Map.Entry<K, Location> mapEntry : index.entrySet()) {
+                SimpleEntry<K, V> entry = new SimpleEntry<>(mapEntry.getKey(), readValue(mapEntry.getValue()));
+                entry.setLastAccessTime(mapEntry.getValue().accessTime);
+                entries.add(entry);
+            }
+            return entries;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public String getCacheId() {
+        return cacheId;
+    }
+
+    public int segmentCount() {
+        try {
+            readLock.lock();
+            return segments.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Compacts every sealed segment which has any dead records, regardless of the compaction ratio.
+     */
+    public void compact() {
+        try {
+            writeLock.lock();
+            ensureOpen();
+            compact(0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writeLock.lock();
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.channel.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "cannot close segment " + segment.file.getName(), e);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new CacheException("Cache is closed");
+        }
+    }
+
+    /**
+     * Makes room for a record of the given size, compacting dead records when the budget would be exceeded.
+     */
+    private void reserve(long recordSize) {
+        if (!makeRoom(recordSize)) {
+            throw new CacheException("Files size is exceeded");
+        }
+    }
+
+    /**
+     * Compacts dead records when a record of the given size would exceed the budget, returns whether it fits.
+     * Tombstones are appended even if it does not, a removal is not refused for lack of room.
+     */
+    private boolean makeRoom(long recordSize) {
+        if (filesSize + recordSize > sizeLimit) {
+            compact(0);
+            if (filesSize + recordSize > sizeLimit && active.size > active.live) {
+                // dead records of the active segment can only be reclaimed once it is sealed
+                try {
+                    roll();
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "cannot create cache segment", e);
+                    throw new CacheException("Cannot create cache segment");
+                }
+                compact(0);
+            }
+        }
+        return filesSize + recordSize <= sizeLimit;
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled || !hasCompactionCandidates(compactionRatio)) {
+            return;
+        }
+        compactionScheduled = true;
+        compactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeLock.lock();
+                    compactionScheduled = false;
+                    if (!closed) {
+                        compact(compactionRatio);
+                    }
+                } catch (CacheException e) {
+                    logger.log(Level.WARNING, "background compaction failed", e);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        });
+    }
+
+    private boolean hasCompactionCandidates(double ratio) {
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.isCompactable(ratio)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void compact(double ratio) {
+        List<Segment> candidates = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.isCompactable(ratio)) {
+                candidates.add(segment);
+            }
+        }
+        for (Segment segment : candidates) {
+            try {
+                compact(segment);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "cannot compact segment " + segment.file.getName(), e);
+                throw new CacheException("Cannot compact cache segment");
+            }
+        }
+    }
+
+    /**
+     * Copies live records and still needed tombstones of the segment to the active segment and deletes it.
+     * Tombstones are only needed while an older segment may hold a record of the same key.
+     */
+    private void compact(Segment segment) throws IOException {
+        boolean oldest = segments.firstKey() == segment.id;
+        RecordReader reader = new RecordReader(segment);
+        Record record;
+        while ((record = reader.next()) != null) {
+            K key = readKey(record.key);
+            if (record.type == PUT) {
+                Location location = index.get(key);
+                if (location != null && location.segment == segment && location.position == record.position) {
+                    Location moved = append(record.bytes, location.valueOffset);
+                    moved.accessTime = location.accessTime;
+                    moved.segment.live += moved.length;
+                    index.put(key, moved);
+                }
+            } else if (!oldest && !index.containsKey(key)) {
+                append(record.bytes, record.length);
+            }
+        }
+        segments.remove(segment.id);
+        filesSize -= segment.size;
+        segment.delete();
+    }
+
+    private Location append(byte[] record, int valueOffset) {
+        try {
+            if (active.size >= segmentSize) {
+                roll();
+            }
+            long position = active.size;
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                active.channel.write(buffer, position + buffer.position());
+            }
+            active.size += record.length;
+            filesSize += record.length;
+            return new Location(active, position, record.length, valueOffset, System.nanoTime());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "cannot append record", e);
+            throw new CacheException("Cannot write cache record");
+        }
+    }
+
+    /**
+     * Appends the records with one gathering write per segment, rolling the active segment
+     * at the same points as {@link #append(byte[], int)} would.
+     */
+    private List<Location> appendAll(List<byte[]> records, List<Integer> valueOffsets) {
+        List<Location> locations = new ArrayList<>(records.size());
+        try {
+            int first = 0;
+            while (first < records.size()) {
+                if (active.size >= segmentSize) {
+                    roll();
+                }
+                long position = active.size;
+                long end = position;
+                int last = first;
+                while (last < records.size() && (last == first || end < segmentSize)) {
+                    end += records.get(last).length;
+                    last++;
+                }
+                ByteBuffer[] buffers = new ByteBuffer[last - first];
+                long recordPosition = position;
+                long now = System.nanoTime();
+                for (int i = first; i < last; i++) {
+                    byte[] record = records.get(i);
+                    buffers[i - first] = ByteBuffer.wrap(record);
+                    locations.add(new Location(active, recordPosition, record.length, valueOffsets.get(i), now));
+                    recordPosition += record.length;
+                }
+                active.channel.position(position);
+                long remaining = end - position;
+                while (remaining > 0) {
+                    remaining -= active.channel.write(buffers);
+                }
+                active.size = end;
+                filesSize += end - position;
+                first = last;
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "cannot append records", e);
+            throw new CacheException("Cannot write cache records");
+        }
+        return locations;
+    }
+
+    private void roll() throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        File file = new File(cacheDirectory, String.format("%08d", id) + SEGMENT_SUFFIX);
+        active = new Segment(id, file);
+        segments.put(id, active);
+    }
+
+    private V readValue(Location location) {
+        try {
+            long position = location.position + location.valueOffset;
+            int length = location.length - location.valueOffset;
+            byte[] bytes = mmap
+                    ? location.segment.readMapped(position, length, mmapWindow)
+                    : read(location.segment, position, length).array();
+            @SuppressWarnings("unchecked")
+            V value = (V) Serializers.fromBytes(valueSerializer, bytes);
+            return value;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Cannot read value", e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K readKey(byte[] bytes) {
+        return (K) Serializers.fromBytes(keySerializer, bytes);
+    }
+
+    /**
+     * Key passed to a method of the map interface, which is only looked up or serialized.
+     */
+    @SuppressWarnings("unchecked")
+    private K asKey(Object key) {
+        return (K) key;
+    }
+
+    private byte[] keyBytes(Object key) {
+        return Serializers.toBytes(keySerializer, asKey(key));
+    }
+
+    private static ByteBuffer read(Segment segment, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (segment.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of segment " + segment.file.getName());
+            }
+        }
+        return buffer;
+    }
+
+    private static byte[] createRecord(byte type, byte[] key, byte[] value) {
+        int length = BODY_HEADER_SIZE + key.length + value.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putInt(key.length);
+        buffer.put(key);
+        buffer.put(value);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+        private long live;
+
+        private Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            this.size = channel.size();
+        }
+
+        private final List<MappedByteBuffer> windows = new ArrayList<>();
+
+        /**
+         * Copies bytes out of the memory mapped windows of the segment. Windows are mapped on first use;
+         * a window of the active segment is mapped again once the segment has grown past its mapped end.
+         */
+        private byte[] readMapped(long position, int length, int windowSize) throws IOException {
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                long current = position + copied;
+                int index = (int) (current / windowSize);
+                int offset = (int) (current - (long) index * windowSize);
+                int count = Math.min(length - copied, windowSize - offset);
+                ByteBuffer window = window(index, offset + count, windowSize).duplicate();
+                window.position(offset);
+                window.get(bytes, copied, count);
+                copied += count;
+            }
+            return bytes;
+        }
+
+        private synchronized MappedByteBuffer window(int index, int end, int windowSize) throws IOException {
+            while (windows.size() <= index) {
+                windows.add(null);
+            }
+            MappedByteBuffer window = windows.get(index);
+            if (window == null || window.capacity() < end) {
+                long start = (long) index * windowSize;
+                long length = Math.min(windowSize, channel.size() - start);
+                if (length < end) {
+                    throw new EOFException("Unexpected end of segment " + file.getName());
+                }
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                windows.set(index, window);
+            }
+            return window;
+        }
+
+        private boolean isCompactable(double ratio) {
+            long dead = size - live;
+            return dead > 0 && dead >= size * ratio;
+        }
+
+        private void delete() throws IOException {
+            synchronized (this) {
+                windows.clear();
+            }
+            channel.close();
+            if (!file.delete()) {
+                throw new IOException("Cannot delete segment " + file.getName());
+            }
+        }
+    }
+
+    private static class Location {
+        private final Segment segment;
+        private final long position;
+        private final int length;
+        private final int valueOffset;
+        private long accessTime;
+
+        private Location(Segment segment, long position, int length, int valueOffset, long accessTime) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.valueOffset = valueOffset;
+            this.accessTime = accessTime;
+        }
+    }
+
+    private static class Record {
+        private long position;
+        private int length;
+        private byte type;
+        private long time;
+        private byte[] key;
+        private byte[] bytes;
+
+        private int valueOffset() {
+            return HEADER_SIZE + BODY_HEADER_SIZE + key.length;
+        }
+    }
+
+    /**
+     * Reads the records of a segment one by one, stopping at the end or at the first damaged record.
+     */
+    private static class RecordReader {
+        private final Segment segment;
+        private long position;
+
+        private RecordReader(Segment segment) {
+            this.segment = segment;
+        }
+
+        private Record next() throws IOException {
+            if (position + HEADER_SIZE > segment.size) {
+                return null;
+            }
+            ByteBuffer header = read(segment, position, HEADER_SIZE);
+            int length = header.getInt(0);
+            if (length < BODY_HEADER_SIZE || position + HEADER_SIZE + length > segment.size) {
+                return null;
+            }
+            ByteBuffer buffer = read(segment, position, HEADER_SIZE + length);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), HEADER_SIZE, length);
+            if ((int) crc.getValue() != buffer.getInt(4)) {
+                return null;
+            }
+            Record record = new Record();
+            record.position = position;
+            record.length = HEADER_SIZE + length;
+            record.type = buffer.get(HEADER_SIZE);
+            record.time = buffer.getLong(HEADER_SIZE + 1);
+            int keyLength = buffer.getInt(HEADER_SIZE + 9);
+            record.key = Arrays.copyOfRange(buffer.array(), HEADER_SIZE + BODY_HEADER_SIZE, HEADER_SIZE + BODY_HEADER_SIZE + keyLength);
+            record.bytes = buffer.array();
+            position += record.length;
+            return record;
+        }
+    }
+}
@@ -0,0 +1,564 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.AbstractCache;
+import com.wiley.cache.AccessOrdered;
+import com.wiley.cache.Cache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.EvictionListener;
+import com.wiley.cache.strategies.Strategy;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Memory cache of {@code long} keys stored without boxing. Keys, values and access times live in parallel arrays
+ * of an open addressing table with linear probing, removals shift the following entries back so there are no
+ * tombstones. The access order is a doubly linked list of slot indexes, so the cache is {@link AccessOrdered}.
+ * <p>
+ * Without a strategy the {@code long} methods don't allocate, a {@link Strategy} is given boxed keys and polled
+ * for entries. The {@link Map} methods take boxed keys, so the cache can be a tier of a {@link MultiLevelCache},
+ * and entries are only materialized for the strategies and {@link #getEntries()}. It is bounded by
+ * {@link MemoryCache#LIMIT} and does not support expiration or weights. Values of boxed types have to be passed
+ * boxed, {@code put(1L, 2L)} is ambiguous.
+ */
+public class LongKeyMemoryCache<V> extends AbstractCache<Long, V> implements AccessOrdered<Long, V> {
+
+    private final static Logger logger = Logger.getLogger(LongKeyMemoryCache.class.getName());
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    private long[] keys;
+    private Object[] values;
+    private long[] accessTimes;
+    private int[] before;
+    private int[] after;
+    private int head;
+    private int tail;
+    private int mask;
+    private int size;
+
+    private Strategy strategy;
+    private EvictionListener<Long, V> evictionListener;
+
+    public LongKeyMemoryCache() {
+    }
+
+    public LongKeyMemoryCache(Properties props) {
+        super(props);
+    }
+
+    /**
+     * Creates a cache which evicts the entry chosen by {@code strategy.poll} when the limit is reached
+     * instead of throwing {@link CacheException}.
+     */
+    public LongKeyMemoryCache(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public LongKeyMemoryCache(Properties props, Strategy strategy) {
+        super(props);
+        this.strategy = strategy;
+    }
+
+    @Override
+    protected void init() {
+        try {
+            this.limit = Math.max(0, Integer.parseInt(properties.getProperty(MemoryCache.LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for limit property", e);
+            this.limit = Integer.valueOf(defaultProperties.getProperty(MemoryCache.LIMIT));
+        }
+        logger.info("Memory cache limit set to " + limit);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        accessTimes = new long[capacity];
+        before = new int[capacity];
+        after = new int[capacity];
+        mask = capacity - 1;
+        head = tail = NONE;
+        size = 0;
+    }
+
+    private int slotOf(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Slot of the key, or {@code -(slot + 1)} of the empty slot where it would be inserted.
+     */
+    private int find(long key) {
+        int slot = slotOf(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+
+    @Override
+    public int size() {
+        try {
+            readLock.lock();
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public boolean containsKey(long key) {
+        try {
+            readLock.lock();
+            return find(key) >= 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long && containsKey((long) (Long) key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        try {
+            readLock.lock();
+            for (Object current : values) {
+                if (current != null && current.equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public V get(long key) {
+        long start = stats.start();
+        try {
+            readLock.lock();
+            int slot = find(key);
+            if (strategy != null) {
+                strategy.recordAccess(this, key, slot >= 0);
+            }
+            stats.recordGet(start, slot >= 0);
+            if (slot < 0) {
+                return null;
+            }
+            touch(slot);
+            return valueAt(slot);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof Long)) {
+            stats.recordGet(stats.start(), false);
+            return null;
+        }
+        return get((long) (Long) key);
+    }
+
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Value cannot be null");
+        }
+        long start = stats.start();
+        List<Cache.Entry<Long, V>> evicted = null;
+        V previous = null;
+        try {
+            writeLock.lock();
+            int slot = find(key);
+            if (slot >= 0) {
+                previous = valueAt(slot);
+                values[slot] = value;
+                touch(slot);
+            } else {
+                while (size >= limit) {
+                    if (evicted == null) {
+                        evicted = new ArrayList<>(1);
+                    }
+                    evicted.add(evict());
+                }
+                if (size + 1 > (mask + 1) - ((mask + 1) >>> 2)) {
+                    resize();
+                }
+                slot = -(find(key) + 1);
+                keys[slot] = key;
+                values[slot] = value;
+                accessTimes[slot] = System.nanoTime();
+                linkLast(slot);
+                size++;
+            }
+            if (strategy != null) {
+                strategy.recordAccess(this, key, true);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (evicted != null && evictionListener != null) {
+            for (Cache.Entry<Long, V> entry : evicted) {
+                evictionListener.onEviction(entry);
+            }
+        }
+        stats.recordPut(start);
+        return previous;
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Key and value cannot be null");
+        }
+        return put((long) key, value);
+    }
+
+    private Cache.Entry<Long, V> evict() {
+        Cache.Entry<Long, V> victim = strategy == null ? null : strategy.poll(this);
+        int slot = victim == null ? NONE : find(victim.getKey());
+        if (slot < 0) {
+            throw new CacheException("Cache limit is exceeded. Limit: " + limit);
+        }
+        Cache.Entry<Long, V> entry = entryAt(slot);
+        removeAt(slot);
+        strategy.recordRemoval(this, entry.getKey());
+        stats.recordEviction();
+        return entry;
+    }
+
+    /**
+     * Doubles the table, the entries are inserted in access order so the list is rebuilt as it goes.
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        long[] oldAccessTimes = accessTimes;
+        int[] oldAfter = after;
+        int oldHead = head;
+        allocate(oldKeys.length << 1);
+        for (int slot = oldHead; slot != NONE; slot = oldAfter[slot]) {
+            int target = -(find(oldKeys[slot]) + 1);
+            keys[target] = oldKeys[slot];
+            values[target] = oldValues[slot];
+            accessTimes[target] = oldAccessTimes[slot];
+            linkLast(target);
+            size++;
+        }
+    }
+
+    public V remove(long key) {
+        try {
+            writeLock.lock();
+            int slot = find(key);
+            if (slot < 0) {
+                return null;
+            }
+            V value = valueAt(slot);
+            removeAt(slot);
+            if (strategy != null) {
+                strategy.recordRemoval(this, key);
+            }
+            return value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Long ? remove((long) (Long) key) : null;
+    }
+
+    /**
+     * Empties the slot and shifts back the entries of its probe sequence which would not be found
+     * across the empty slot any more.
+     */
+    private void removeAt(int slot) {
+        unlink(slot);
+        values[slot] = null;
+        size--;
+        int empty = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (values[next] == null) {
+                return;
+            }
+            int home = slotOf(keys[next]);
+            // the entry stays if its home slot lies cyclically in (empty, next]
+            boolean stays = empty <= next ? empty < home && home <= next : empty < home || home <= next;
+            if (!stays) {
+                move(next, empty);
+                empty = next;
+            }
+        }
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        values[to] = values[from];
+        accessTimes[to] = accessTimes[from];
+        before[to] = before[from];
+        after[to] = after[from];
+        if (before[to] == NONE) {
+            head = to;
+        } else {
+            after[before[to]] = to;
+        }
+        if (after[to] == NONE) {
+            tail = to;
+        } else {
+            before[after[to]] = to;
+        }
+        values[from] = null;
+    }
+
+    @Override
+    public void putAll(Map<? extends Long, ? extends V> map) {
+        try {
+            writeLock.lock();
+            for (Map.Entry<? extends Long, ? extends V> entry : map.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            writeLock.lock();
+            allocate(INITIAL_CAPACITY);
+            if (strategy != null) {
+                strategy.recordClear(this);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Long> keySet() {
+        try {
+            readLock.lock();
+            Set<Long> set = new HashSet<>();
+            for (int slot = 0; slot <= mask; slot++) {
+                if (values[slot] != null) {
+                    set.add(keys[slot]);
+                }
+            }
+            return set;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<V> values() {
+        try {
+            readLock.lock();
+            Collection<V> collection = new ArrayList<>(size);
+            for (int slot = 0; slot < values.length; slot++) {
+                if (values[slot] != null) {
+                    collection.add(valueAt(slot));
+                }
+            }
+            return collection;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Long, V>> entrySet() {
+        try {
+            readLock.lock();
+            Set<Map.Entry<Long, V>> set = new HashSet<>();
+            for (int slot = 0; slot <= mask; slot++) {
+                if (values[slot] != null) {
+                    set.add(new AbstractMap.SimpleEntry<>(keys[slot], valueAt(slot)));
+                }
+            }
+            return set;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Entry<Long, V>> getEntries() {
+        try {
+            readLock.lock();
+            List<Entry<Long, V>> list = new ArrayList<>(size);
+            for (int slot = 0; slot <= mask; slot++) {
+                if (values[slot] != null) {
+                    list.add(entryAt(slot));
+                }
+            }
+            return list;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Cache.Entry<Long, V> getEntry(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        try {
+            readLock.lock();
+            int slot = find((Long) key);
+            return slot < 0 ? null : entryAt(slot);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void setEvictionListener(EvictionListener<Long, V> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    @Override
+    public Cache.Entry<Long, V> getEldestEntry() {
+        try {
+            readLock.lock();
+            synchronized (this) {
+                return head == NONE ? null : entryAt(head);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Cache.Entry<Long, V> getYoungestEntry() {
+        try {
+            readLock.lock();
+            synchronized (this) {
+                return tail == NONE ? null : entryAt(tail);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private Cache.Entry<Long, V> entryAt(int slot) {
+        return new SlotEntry(keys[slot], valueAt(slot), accessTimes[slot]);
+    }
+
+    /**
+     * Moves the slot to the tail of the access order, readers holding the read lock serialize on the cache.
+     */
+    private synchronized void touch(int slot) {
+        accessTimes[slot] = System.nanoTime();
+        if (slot != tail) {
+            unlink(slot);
+            linkLast(slot);
+        }
+    }
+
+    private void linkLast(int slot) {
+        before[slot] = tail;
+        after[slot] = NONE;
+        if (tail == NONE) {
+            head = slot;
+        } else {
+            after[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        if (before[slot] == NONE) {
+            head = after[slot];
+        } else {
+            after[before[slot]] = after[slot];
+        }
+        if (after[slot] == NONE) {
+            tail = before[slot];
+        } else {
+            before[after[slot]] = before[slot];
+        }
+    }
+
+    /**
+     * Copy of an entry, reading its value with {@code getValue(false)} counts as an access of the key.
+     */
+    private class SlotEntry extends Cache.Entry<Long, V> {
+
+        private final long lastAccessTime;
+
+        private SlotEntry(long key, V value, long lastAccessTime) {
+            super(key, value);
+            this.lastAccessTime = lastAccessTime;
+        }
+
+        @Override
+        public Long getLastAccessTime() {
+            return lastAccessTime;
+        }
+
+        @Override
+        public V getValue(boolean quite) {
+            if (!quite) {
+                get((long) key);
+            }
+            return value;
+        }
+
+        @Override
+        public Long getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("Entries are copies, put the value into the cache");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+            return key.equals(that.getKey()) && value.equals(that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "SlotEntry{key=" + key + ", value=" + value + "}";
+        }
+    }
+}
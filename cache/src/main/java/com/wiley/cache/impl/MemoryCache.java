@@ -0,0 +1,655 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.AbstractCache;
+import com.wiley.cache.AccessOrdered;
+import com.wiley.cache.Cache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.EvictionListener;
+import com.wiley.cache.Expiring;
+import com.wiley.cache.RemovalListener;
+import com.wiley.cache.Weigher;
+import com.wiley.cache.Weighers;
+import com.wiley.cache.Weighted;
+import com.wiley.cache.strategies.Strategy;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache which keeps entries in a hash map. It is bounded by the number of entries, or by their cumulative weight
+ * estimated by a {@link Weigher} when {@link #WEIGHT_LIMIT} is set.
+ * <p>
+ * With {@link #VALUES} set to {@code soft} or {@code weak} values are held through references the garbage
+ * collector may clear, except for the {@link #HARD_LIMIT} most recently used ones which are also held strongly.
+ * A cleared value is a miss, its entry is removed by the next write, {@link #size()} or {@link #cleanUp()}.
+ * In a {@link MultiLevelCache} a collectable tier followed by one which is not keeps a copy of its entries
+ * in that tier, so a read of a cleared entry falls through to the copy and promotes it again.
+ */
+public class MemoryCache<K, V> extends AbstractCache<K, V> implements AccessOrdered<K, V>, Expiring<K, V>, Weighted<K, V> {
+
+    private Map<K, SimpleEntry<K, V>> storage = new HashMap<>();
+    private AccessList accessList = new AccessList();
+    private TimerWheel timerWheel = new TimerWheel();
+
+    private Strategy strategy;
+    private EvictionListener<K, V> evictionListener;
+    private RemovalListener<? super K> removalListener;
+    private Weigher<? super K, ? super V> weigher;
+
+    private long weightLimit;
+    private long weight;
+
+    private final static Logger logger = Logger.getLogger(MemoryCache.class.getName());
+
+    public static final String LIMIT = "cache.memory.limit";
+    public static final String WEIGHT_LIMIT = "cache.memory.limit.weight";
+    public static final String VALUES = "cache.memory.values";
+    public static final String HARD_LIMIT = "cache.memory.limit.hard";
+
+    private enum Strength { STRONG, SOFT, WEAK }
+
+    private Strength valueStrength;
+    private int hardLimit;
+    private ReferenceQueue<V> queue;
+    private Map<K, V> core;
+
+
+    public MemoryCache() {
+    }
+
+    public MemoryCache(Properties props) {
+        super(props);
+    }
+
+    /**
+     * Creates a cache which evicts the entry chosen by {@code strategy.poll} when the limit is reached
+     * instead of throwing {@link CacheException}.
+     */
+    public MemoryCache(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public MemoryCache(Properties props, Strategy strategy) {
+        super(props);
+        this.strategy = strategy;
+    }
+
+    protected void init() {
+        try {
+            this.limit = Math.max(0, Integer.parseInt(properties.getProperty(LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for limit property", e);
+            this.limit = Integer.valueOf(defaultProperties.getProperty(LIMIT));
+        }
+        try {
+            this.weightLimit = Math.max(0, Long.parseLong(properties.getProperty(WEIGHT_LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for weight limit property", e);
+            this.weightLimit = Long.valueOf(defaultProperties.getProperty(WEIGHT_LIMIT));
+        }
+        if (weightLimit > 0) {
+            // the weight budget replaces the number of entries
+            this.limit = Integer.MAX_VALUE;
+            logger.info("Memory cache weight limit set to " + weightLimit);
+        } else {
+            logger.info("Memory cache limit set to " + limit);
+        }
+        try {
+            this.valueStrength = Strength.valueOf(properties.getProperty(VALUES).trim().toUpperCase());
+        } catch(IllegalArgumentException e) {
+            logger.log(Level.WARNING, "wrong value for values property", e);
+            this.valueStrength = Strength.valueOf(defaultProperties.getProperty(VALUES).trim().toUpperCase());
+        }
+        try {
+            this.hardLimit = Math.max(0, Integer.parseInt(properties.getProperty(HARD_LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for hard limit property", e);
+            this.hardLimit = Integer.valueOf(defaultProperties.getProperty(HARD_LIMIT));
+        }
+        if (valueStrength != Strength.STRONG) {
+            this.queue = new ReferenceQueue<>();
+            if (hardLimit > 0) {
+                this.core = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                        return size() > hardLimit;
+                    }
+                };
+            }
+            logger.info("Memory cache values are " + valueStrength.name().toLowerCase()
+                    + ", " + hardLimit + " of them held strongly");
+        }
+        initExpiration();
+    }
+
+    @Override
+    public int size() {
+        // the write lock is not available when the caller holds the read lock
+        if (queue != null && writeLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        try {
+            readLock.lock();
+            return storage.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        try {
+            readLock.lock();
+            SimpleEntry<K, V> entry = storage.get(key);
+            return entry != null && !entry.isExpired(System.nanoTime()) && entry.getValue() != null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        try {
+            readLock.lock();
+            return storage.containsValue(value);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        long start = stats.start();
+        try {
+            readLock.lock();
+            SimpleEntry<K, V> entry = storage.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime())) {
+                // reclaimed by the next write
+                entry = null;
+            }
+            V value = entry == null ? null : entry.getValue(false);
+            if (strategy != null) {
+                strategy.recordAccess(this, key, value != null);
+            }
+            stats.recordGet(start, value != null);
+            if (value != null && core != null) {
+                hold(entry.getKey(), value);
+            }
+            return value;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the keys under a single acquisition of the read lock.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        int misses = 0;
+        try {
+            readLock.lock();
+            long now = System.nanoTime();
+            for (K key : keys) {
+                SimpleEntry<K, V> entry = storage.get(key);
+                if (entry != null && entry.isExpired(now)) {
+                    entry = null;
+                }
+                V value = entry == null ? null : entry.getValue(false);
+                if (strategy != null) {
+                    strategy.recordAccess(this, key, value != null);
+                }
+                if (value != null) {
+                    values.put(key, value);
+                    if (core != null) {
+                        hold(key, value);
+                    }
+                } else {
+                    misses++;
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        stats.recordGets(values.size(), misses);
+        return values;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, -1, -1);
+    }
+
+    @Override
+    public V put(K key, V value, long duration, TimeUnit unit) {
+        return put(key, value, unit.toNanos(Math.max(0, duration)), -1);
+    }
+
+    @Override
+    public V put(K key, V value, int weight) {
+        return put(key, value, -1, Math.max(0, weight));
+    }
+
+    /**
+     * Stores the entry, a negative weight means the entry is weighed here.
+     */
+    private V put(K key, V value, long duration, int entryWeight) {
+        if (key == null  || value == null) {
+            throw new NullPointerException("Key and value cannot be null");
+        }
+        long start = stats.start();
+        if (entryWeight < 0) {
+            entryWeight = weightLimit > 0 || weigher != null ? weigh(key, value) : 0;
+        }
+        if (weightLimit > 0 && entryWeight > weightLimit) {
+            throw new CacheException("Entry weight " + entryWeight + " exceeds the weight limit " + weightLimit);
+        }
+        List<Cache.Entry<K, V>> evicted = null;
+        SimpleEntry<K, V> previous;
+        try {
+            writeLock.lock();
+            long now = System.nanoTime();
+            expire(now);
+            drain();
+            while (!hasRoom(key, entryWeight)) {
+                if (evicted == null) {
+                    evicted = new ArrayList<>(1);
+                }
+                evicted.add(evict());
+            }
+            SimpleEntry<K, V> entry  = queue == null ? new SimpleEntry<>(key, value) : new ReferenceEntry(key, value);
+            if (core != null) {
+                hold(key, value);
+            }
+            entry.setWeight(entryWeight);
+            weight += entryWeight;
+            setExpiration(entry, now, duration);
+            accessList.add(entry);
+            timerWheel.schedule(entry);
+            previous = storage.put(key, entry);
+            if (previous != null) {
+                weight -= previous.getWeight();
+                accessList.remove(previous);
+                timerWheel.cancel(previous);
+                if (previous.isExpired(now)) {
+                    previous = null;
+                }
+            }
+            if (strategy != null) {
+                strategy.recordAccess(this, key, true);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (evicted != null && evictionListener != null) {
+            for (Cache.Entry<K, V> entry : evicted) {
+                evictionListener.onEviction(entry);
+            }
+        }
+        stats.recordPut(start);
+        return previous == null ? null : previous.getValue();
+    }
+
+    private boolean hasRoom(K key, int entryWeight) {
+        SimpleEntry<K, V> current = storage.get(key);
+        if (current == null && storage.size() >= limit) {
+            return false;
+        }
+        return weightLimit == 0 || weight - (current == null ? 0 : current.getWeight()) + entryWeight <= weightLimit;
+    }
+
+    private Cache.Entry<K, V> evict() {
+        Cache.Entry<K, V> victim = strategy == null ? null : strategy.poll(this);
+        SimpleEntry<K, V> entry = victim == null ? null : storage.remove(victim.getKey());
+        if (entry == null) {
+            if (weightLimit > 0) {
+                throw new CacheException("Cache weight limit is exceeded. Limit: " + weightLimit);
+            }
+            throw new CacheException("Cache limit is exceeded. Limit: " + limit);
+        }
+        weight -= entry.getWeight();
+        accessList.remove(entry);
+        timerWheel.cancel(entry);
+        release(entry.getKey());
+        strategy.recordRemoval(this, entry.getKey());
+        stats.recordEviction();
+        return entry;
+    }
+
+    /**
+     * Removes the entries which expired by the given time, the timer wheel hands them out
+     * so no scan of the storage is needed.
+     */
+    private void expire(long now) {
+        for (SimpleEntry<K, V> entry : timerWheel.advance(now)) {
+            if (storage.get(entry.getKey()) == entry) {
+                discard(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes the entries whose values were cleared by the garbage collector.
+     */
+    private void drain() {
+        if (queue == null) {
+            return;
+        }
+        Reference<? extends V> reference;
+        while ((reference = queue.poll()) != null) {
+            SimpleEntry<K, V> entry = entryOf(reference);
+            if (storage.get(entry.getKey()) == entry) {
+                timerWheel.cancel(entry);
+                discard(entry);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private SimpleEntry<K, V> entryOf(Reference<? extends V> reference) {
+        return reference instanceof MemoryCache.SoftValue
+                ? ((SoftValue) reference).entry : ((WeakValue) reference).entry;
+    }
+
+    private void discard(SimpleEntry<K, V> entry) {
+        storage.remove(entry.getKey());
+        weight -= entry.getWeight();
+        accessList.remove(entry);
+        release(entry.getKey());
+        if (strategy != null) {
+            strategy.recordRemoval(this, entry.getKey());
+        }
+        stats.recordEviction();
+        if (removalListener != null) {
+            removalListener.onRemoval(entry.getKey());
+        }
+    }
+
+    /**
+     * Holds the value strongly as one of the most recently used, readers share the core under its monitor.
+     */
+    private void hold(K key, V value) {
+        synchronized (core) {
+            core.put(key, value);
+        }
+    }
+
+    private void release(Object key) {
+        if (core != null) {
+            synchronized (core) {
+                core.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+        try {
+            writeLock.lock();
+            expire(System.nanoTime());
+            drain();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        try {
+            writeLock.lock();
+            SimpleEntry<K, V> entry = storage.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            weight -= entry.getWeight();
+            accessList.remove(entry);
+            timerWheel.cancel(entry);
+            release(key);
+            if (strategy != null) {
+                strategy.recordRemoval(this, key);
+            }
+            return entry.isExpired(System.nanoTime()) ? null : entry.getValue();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        try {
+            writeLock.lock();
+            for (Map.Entry<? extends K, ? extends V>  entry : map.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            writeLock.lock();
+            storage.clear();
+            weight = 0;
+            accessList.clear();
+            timerWheel.clear();
+            if (core != null) {
+                synchronized (core) {
+                    core.clear();
+                }
+            }
+            if (strategy != null) {
+                strategy.recordClear(this);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        try {
+            readLock.lock();
+            return storage.keySet();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<V> values() {
+        try {
+            readLock.lock();
+            Collection<V> collection = new ArrayList<>();
+            long now = System.nanoTime();
+            for (SimpleEntry<K, V> entry: storage.values()) {
+                V value = entry.getValue();
+                if (!entry.isExpired(now) && value != null) {
+                    collection.add(value);
+                }
+            }
+            return collection;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        try {
+            readLock.lock();
+            Set<Map.Entry<K, V>> set = new HashSet<>();
+            long now = System.nanoTime();
+            for (Map.Entry<K, SimpleEntry<K, V>> entry : storage.entrySet()) {
+                V value = entry.getValue().getValue();
+                if (!entry.getValue().isExpired(now) && value != null) {
+                    set.add(new AbstractMap.SimpleEntry<>(entry.getKey(), value));
+                }
+            }
+            return set;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        try {
+            readLock.lock();
+            List<Entry<K, V>> list = new ArrayList<>();
+            long now = System.nanoTime();
+            for (SimpleEntry<K, V> entry : storage.values()) {
+                if (!entry.isExpired(now) && entry.getValue() != null) {
+                    list.add(entry);
+                }
+            }
+            return list;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Cache.Entry<K, V> getEntry(Object key) {
+        try {
+            readLock.lock();
+            SimpleEntry<K, V> entry = storage.get(key);
+            return entry == null || entry.isExpired(System.nanoTime()) || entry.getValue() == null ? null : entry;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Whether the values beyond the hard limit are held by soft or weak references, so the garbage collector
+     * may clear them.
+     */
+    public boolean isCollectable() {
+        return queue != null;
+    }
+
+    public void setEvictionListener(EvictionListener<K, V> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    @Override
+    public void setRemovalListener(RemovalListener<? super K> removalListener) {
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * Sets the weigher of entries, {@link Weighers#ESTIMATOR} by default.
+     * Entries already stored keep the weight they were stored with.
+     */
+    public void setWeigher(Weigher<? super K, ? super V> weigher) {
+        this.weigher = weigher;
+    }
+
+    @Override
+    public int weigh(K key, V value) {
+        return weigher == null ? Weighers.ESTIMATOR.weigh(key, value) : weigher.weigh(key, value);
+    }
+
+    @Override
+    public long getWeight() {
+        try {
+            readLock.lock();
+            return weight;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long getWeightLimit() {
+        return weightLimit;
+    }
+
+    @Override
+    public Cache.Entry<K, V> getEldestEntry() {
+        return accessList.eldest();
+    }
+
+    @Override
+    public Cache.Entry<K, V> getYoungestEntry() {
+        return accessList.youngest();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void onAccess(SimpleEntry<?, ?> entry) {
+        accessList.touch((SimpleEntry<K, V>) entry);
+    }
+
+    /**
+     * References to a value which know its entry, so the entry can be removed once the value is cleared.
+     */
+    private final class SoftValue extends SoftReference<V> {
+        private final SimpleEntry<K, V> entry;
+
+        private SoftValue(V value, SimpleEntry<K, V> entry) {
+            super(value, queue);
+            this.entry = entry;
+        }
+    }
+
+    private final class WeakValue extends WeakReference<V> {
+        private final SimpleEntry<K, V> entry;
+
+        private WeakValue(V value, SimpleEntry<K, V> entry) {
+            super(value, queue);
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Entry holding its value through a soft or weak reference, the value is {@code null} once it is cleared.
+     */
+    private class ReferenceEntry extends SimpleEntry<K, V> {
+
+        private Reference<V> reference;
+
+        private ReferenceEntry(K key, V value) {
+            super(key, null);
+            this.reference = reference(value);
+        }
+
+        private Reference<V> reference(V value) {
+            return valueStrength == Strength.SOFT ? new SoftValue(value, this) : new WeakValue(value, this);
+        }
+
+        @Override
+        public V getValue(boolean quite) {
+            super.getValue(quite);
+            return reference.get();
+        }
+
+        @Override
+        public V getValue() {
+            return reference.get();
+        }
+
+        @Override
+        public V setValue(V value) {
+            V current = reference.get();
+            reference = reference(value);
+            return current;
+        }
+    }
+}
@@ -0,0 +1,877 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.AbstractCache;
+import com.wiley.cache.AccessOrdered;
+import com.wiley.cache.Cache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.Expiring;
+import com.wiley.cache.RemovalListener;
+import com.wiley.cache.Weighted;
+import com.wiley.cache.stats.StatsCounter;
+import com.wiley.cache.strategies.LastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.RandomStrategy;
+import com.wiley.cache.strategies.Strategy;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Cache built of several tiers, the first tier holds the hottest entries. Tiers should be used only through
+ * the multi-level cache, it keeps a directory of keys and per-tier counters so lookups and sizing don't have
+ * to touch the tiers. With statistics enabled the hits are also counted per tier, a hit counts for the tier
+ * which held the entry before it was promoted.
+ * <p>
+ * Accesses are recorded for the tiers as well, so a strategy ranks the entries of a tier by their use there.
+ * Victims of recency based and random strategies are taken from the order of keys kept for every tier,
+ * other strategies are asked to pick them.
+ * <p>
+ * Entries the tiers drop on their own, e.g. expired ones, are reported by {@link Expiring} tiers and taken out
+ * of the directory by the next write.
+ * <p>
+ * A memory tier whose values may be collected is inclusive when the next tier holds values strongly: the lower
+ * tiers keep a copy of its entries, so an entry whose value was cleared is still read from the copy.
+ */
+public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
+    
+    protected List<Cache<K, V>> caches;
+    protected Strategy strategy;
+
+    private Map<Object, Integer> directory = new HashMap<>();
+    // keys of inclusive tiers which have a copy in a lower tier, mapped to the tier of the copy
+    private Map<Object, Integer> copies = new HashMap<>();
+    private int[] sizes;
+    // keys of every tier in the order they were stored, or last read in the first tier
+    private List<LinkedHashMap<Object, Boolean>> orders;
+    private Random random = new Random();
+    // entries dropped by the tiers on their own, the tiers report them under their locks
+    private final Queue<Removal> removals = new ConcurrentLinkedQueue<>();
+
+    public MultiLevelCache(List<Cache<K, V>> caches, Strategy strategy) {
+        open(caches, strategy);
+    }
+
+    public MultiLevelCache(Properties properties, List<Cache<K, V>> caches, Strategy strategy) {
+        super(properties);
+        open(caches, strategy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void open(List<Cache<K, V>> caches, Strategy strategy) {
+        if (caches.isEmpty()) {
+            throw new IllegalArgumentException("At least one cache should be provided");
+        }
+        this.caches = caches;
+        this.strategy = strategy;
+        this.sizes = new int[caches.size()];
+        this.orders = new ArrayList<>(caches.size());
+        // tiers which already have entries, e.g. reopened file caches, are scanned once
+        for (int i = 0; i < caches.size(); i++) {
+            Cache<K, V> cache = caches.get(i);
+            LinkedHashMap<Object, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+            if (!cache.isEmpty()) {
+                for (Entry<K, V> entry : cache.getEntries()) {
+                    Integer level = directory.get(entry.getKey());
+                    if (level == null) {
+                        directory.put(entry.getKey(), i);
+                        order.put(entry.getKey(), Boolean.TRUE);
+                    } else if (isInclusive(level) && !copies.containsKey(entry.getKey())) {
+                        copies.put(entry.getKey(), i);
+                        order.put(entry.getKey(), Boolean.TRUE);
+                    }
+                }
+            }
+            orders.add(order);
+            sizes[i] = cache.size();
+            if (cache instanceof Expiring) {
+                final int level = i;
+                ((Expiring<K, V>) cache).setRemovalListener(new RemovalListener<K>() {
+                    @Override
+                    public void onRemoval(K key) {
+                        removals.add(new Removal(level, key));
+                    }
+                });
+            }
+        }
+        if (stats.isEnabled()) {
+            stats = new StatsCounter(caches.size());
+        }
+    }
+
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        List<Entry<K, V>> entries = new ArrayList<>();
+        Set<Object> keys = new HashSet<>();
+        for (Cache<K, V> cache : caches) {
+            for (Entry<K, V> entry : cache.getEntries()) {
+                // copies of the entries of inclusive tiers are listed once
+                if (keys.add(entry.getKey())) {
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Entry<K, V> getEntry(Object key) {
+        try {
+            readLock.lock();
+            for (Cache<K, V> cache : caches) {
+                Entry<K, V> entry = cache.getEntry(key);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int getLimit() {
+        long limit = 0;
+        for (Cache<K, V> cache : caches) {
+            limit += cache.getLimit();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, limit);
+    }
+
+    @Override
+    protected void init() {
+    }
+
+    @Override
+    public int size() {
+        expungeIfFree();
+        try {
+            readLock.lock();
+            return directory.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        try {
+            readLock.lock();
+            return directory.containsKey(key);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Number of entries in the given tier.
+     */
+    public int size(int level) {
+        expungeIfFree();
+        try {
+            readLock.lock();
+            return sizes[level];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        try {
+            readLock.lock();
+            for (Cache<K, V> cache : caches) {
+                if (cache.containsValue(value)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        long start = stats.start();
+        try {
+            readLock.lock();
+            int level = levelOf(key);
+            V value = level == 0 ? caches.get(0).get(key) : null;
+            if (level < 0 || value != null) {
+                if (value != null) {
+                    touch(key);
+                }
+                strategy.recordAccess(caches.get(0), key, value != null);
+                strategy.recordAccess(this, key, value != null);
+                recordGet(start, level, value != null);
+                return value;
+            }
+        } finally {
+            readLock.unlock();
+        }
+        try {
+            writeLock.lock();
+            expunge();
+            // the entry may have moved while no lock was held
+            int level = levelOf(key);
+            V value = null;
+            if (level == 0) {
+                value = caches.get(0).get(key);
+                if (value == null) {
+                    // expired or collected in the tier, its copy is taken back
+                    value = promote(0, key);
+                } else {
+                    touch(key);
+                    strategy.recordAccess(caches.get(0), key, true);
+                }
+            } else if (level > 0) {
+                value = promote(level, key);
+            }
+            strategy.recordAccess(this, key, value != null);
+            recordGet(start, level, value != null);
+            return value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        long start = stats.start();
+        try {
+            writeLock.lock();
+            expunge();
+            int level = levelOf(key);
+            V previous;
+            if (level > 0) {
+                previous = detach(level, key);
+                try {
+                    insert(0, key, value);
+                } catch (CacheException e) {
+                    attach(level, key, previous);
+                    throw e;
+                }
+            } else {
+                previous = insert(0, key, value);
+            }
+            strategy.recordAccess(this, key, true);
+            stats.recordPut(start);
+            return previous;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        try {
+            writeLock.lock();
+            expunge();
+            int level = levelOf(key);
+            if (level < 0) {
+                return null;
+            }
+            V value = detach(level, key);
+            strategy.recordRemoval(this, key);
+            return value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the keys under a single acquisition of the write lock. The keys are grouped by the tier holding them,
+     * each tier is read with one bulk call and the hits of the lower tiers are promoted to the first one.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        int misses = 0;
+        try {
+            writeLock.lock();
+            expunge();
+            List<List<K>> batches = groupByLevel(keys);
+            misses += batches.get(caches.size()).size();
+            for (K key : batches.get(caches.size())) {
+                strategy.recordAccess(this, key, false);
+            }
+            for (int level = 0; level < caches.size(); level++) {
+                List<K> batch = new ArrayList<>();
+                for (K key : batches.get(level)) {
+                    // promotions of the upper tiers may have demoted the key further
+                    int current = levelOf(key);
+                    if (current == level) {
+                        batch.add(key);
+                    } else {
+                        batches.get(current).add(key);
+                    }
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                Map<K, V> found = caches.get(level).getAll(batch);
+                List<K> gone = new ArrayList<>();
+                Map<K, V> copied = new HashMap<>();
+                for (K key : batch) {
+                    if (found.containsKey(key)) {
+                        continue;
+                    }
+                    if (copies.containsKey(key)) {
+                        // collected in the tier, the copy is taken back
+                        V copy = detach(level, key);
+                        if (copy != null) {
+                            copied.put(key, copy);
+                        }
+                    } else {
+                        // expired in the tier
+                        gone.add(key);
+                    }
+                }
+                detachAll(level, gone);
+                promoteAll(level, copied);
+                if (level > 0) {
+                    detachAll(level, found.keySet());
+                    promoteAll(level, found);
+                } else {
+                    for (K key : found.keySet()) {
+                        touch(key);
+                        strategy.recordAccess(caches.get(0), key, true);
+                    }
+                }
+                for (K key : batch) {
+                    boolean hit = found.containsKey(key) || copied.containsKey(key);
+                    strategy.recordAccess(this, key, hit);
+                    if (hit) {
+                        stats.recordTierHit(level);
+                    } else {
+                        misses++;
+                    }
+                }
+                values.putAll(found);
+                values.putAll(copied);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        stats.recordGets(values.size(), misses);
+        return values;
+    }
+
+    /**
+     * Stores the entries in the first tier under a single acquisition of the write lock. Entries held by lower
+     * tiers are taken out of them with one bulk call per tier first; if an entry cannot be stored, it and the
+     * entries not stored yet are put back where they were.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        try {
+            writeLock.lock();
+            expunge();
+            List<List<K>> batches = groupByLevel(map.keySet());
+            Map<K, V> detached = new HashMap<>();
+            Map<K, Integer> levels = new HashMap<>();
+            for (int level = 1; level < caches.size(); level++) {
+                List<K> batch = batches.get(level);
+                if (!batch.isEmpty()) {
+                    Map<K, V> found = caches.get(level).getAll(batch);
+                    detachAll(level, batch);
+                    detached.putAll(found);
+                    for (K key : found.keySet()) {
+                        levels.put(key, level);
+                    }
+                }
+            }
+            List<K> keys = new ArrayList<>(map.keySet());
+            for (int i = 0; i < keys.size(); i++) {
+                K key = keys.get(i);
+                try {
+                    insert(0, key, map.get(key));
+                } catch (CacheException e) {
+                    for (K remaining : keys.subList(i, keys.size())) {
+                        if (detached.containsKey(remaining)) {
+                            attach(levels.get(remaining), remaining, detached.get(remaining));
+                        }
+                    }
+                    throw e;
+                }
+                strategy.recordAccess(this, key, true);
+            }
+            stats.recordPuts(keys.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the keys with one bulk call per tier under a single acquisition of the write lock.
+     */
+    @Override
+    public void removeAll(Collection<?> keys) {
+        try {
+            writeLock.lock();
+            expunge();
+            List<List<Object>> batches = groupByLevel(keys);
+            for (int level = 0; level < caches.size(); level++) {
+                detachAll(level, batches.get(level));
+                for (Object key : batches.get(level)) {
+                    strategy.recordRemoval(this, key);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Distinct keys grouped by the tier holding them, the last group holds the keys no tier has.
+     */
+    private <T> List<List<T>> groupByLevel(Collection<? extends T> keys) {
+        List<List<T>> batches = new ArrayList<>(caches.size() + 1);
+        for (int i = 0; i <= caches.size(); i++) {
+            batches.add(new ArrayList<T>());
+        }
+        for (T key : new LinkedHashSet<>(keys)) {
+            int level = levelOf(key);
+            batches.get(level < 0 ? caches.size() : level).add(key);
+        }
+        return batches;
+    }
+
+    private void detachAll(int level, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        caches.get(level).removeAll(keys);
+        Map<Integer, List<Object>> copied = new HashMap<>();
+        for (Object key : keys) {
+            Integer copy = copies.get(key);
+            if (copy != null) {
+                if (!copied.containsKey(copy)) {
+                    copied.put(copy, new ArrayList<Object>());
+                }
+                copied.get(copy).add(key);
+            }
+            forget(level, key);
+        }
+        // the copies go with the entries
+        for (Map.Entry<Integer, List<Object>> batch : copied.entrySet()) {
+            caches.get(batch.getKey()).removeAll(batch.getValue());
+            for (Object key : batch.getValue()) {
+                forget(batch.getKey(), key);
+            }
+        }
+    }
+
+    /**
+     * Moves entries detached from the given tier to the first one, on failure the entries not moved yet
+     * are put back.
+     */
+    private void promoteAll(int level, Map<K, V> entries) {
+        List<K> keys = new ArrayList<>(entries.keySet());
+        for (int i = 0; i < keys.size(); i++) {
+            try {
+                insert(0, keys.get(i), entries.get(keys.get(i)));
+            } catch (CacheException e) {
+                for (K key : keys.subList(i, keys.size())) {
+                    attach(level, key, entries.get(key));
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void recordGet(long start, int level, boolean hit) {
+        if (hit) {
+            stats.recordTierHit(level);
+        }
+        stats.recordGet(start, hit);
+    }
+
+    /**
+     * Index of the tier holding the key, or -1 when no tier has it.
+     */
+    private int levelOf(Object key) {
+        Integer level = directory.get(key);
+        return level == null ? -1 : level;
+    }
+
+    /**
+     * Takes the entries the tiers dropped on their own out of the bookkeeping, called under the write lock.
+     */
+    private void expunge() {
+        Removal removal;
+        while ((removal = removals.poll()) != null) {
+            // the key may have been stored in the tier again since
+            if (holds(removal.level, removal.key) && !caches.get(removal.level).containsKey(removal.key)) {
+                forget(removal.level, removal.key);
+            }
+        }
+    }
+
+    private void expungeIfFree() {
+        // the write lock is not available when the caller holds the read lock
+        if (!removals.isEmpty() && writeLock.tryLock()) {
+            try {
+                expunge();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes the entry out of the tier together with its copy. The value of the copy is returned when the value
+     * in the tier was collected.
+     */
+    private V detach(int level, Object key) {
+        V value = caches.get(level).remove(key);
+        Integer copied = levelOf(key) == level ? copies.get(key) : null;
+        forget(level, key);
+        if (copied != null) {
+            V copy = detach(copied, key);
+            if (value == null) {
+                value = copy;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drops the key taken out of the tier from the bookkeeping. If the entry has a copy, the copy becomes the entry.
+     */
+    private void forget(int level, Object key) {
+        orders.get(level).remove(key);
+        sizes[level]--;
+        strategy.recordRemoval(caches.get(level), key);
+        Integer copy = copies.remove(key);
+        if (levelOf(key) != level) {
+            // only the copy of an entry of an upper tier is gone
+            return;
+        }
+        if (copy != null) {
+            directory.put(key, copy);
+        } else {
+            directory.remove(key);
+        }
+    }
+
+    /**
+     * Whether the tier has the key, as its own entry or as the copy of an entry of an inclusive tier.
+     */
+    private boolean holds(int level, Object key) {
+        Integer copy = copies.get(key);
+        return levelOf(key) == level || copy != null && copy == level;
+    }
+
+    /**
+     * Whether the tier is inclusive: its values may be collected and the next tier holds values strongly,
+     * so copies of its entries are kept below it.
+     */
+    private boolean isInclusive(int level) {
+        return level < caches.size() - 1 && isCollectable(level) && !isCollectable(level + 1);
+    }
+
+    private boolean isCollectable(int level) {
+        Cache<K, V> cache = caches.get(level);
+        return cache instanceof MemoryCache && ((MemoryCache<?, ?>) cache).isCollectable();
+    }
+
+    private void attach(int level, K key, V value) {
+        Weighted<K, V> weighted = weighted(level);
+        store(level, key, value, weighted == null ? 0 : weighted.weigh(key, value));
+        if (isInclusive(level)) {
+            copy(level, key, value);
+        }
+    }
+
+    /**
+     * Writes a copy of the entry just stored in the inclusive tier to the next tier, replacing the copy it had.
+     * The entry is left without a copy if the lower tiers cannot take it.
+     */
+    private void copy(int level, K key, V value) {
+        Integer copy = copies.get(key);
+        if (copy != null && copy != level + 1) {
+            // the copy was demoted, the new one is written to the next tier
+            detach(copy, key);
+        }
+        try {
+            insert(level + 1, key, value);
+        } catch (CacheException e) {
+            if (copies.containsKey(key)) {
+                // the old value must not stand in for the new one
+                detach(copies.get(key), key);
+            }
+            return;
+        }
+        copies.put(key, levelOf(key));
+        directory.put(key, level);
+    }
+
+    /**
+     * Puts the entry to the tier and records it there, the weight is passed to tiers bounded by weight.
+     */
+    private V store(int level, K key, V value, int weight) {
+        Cache<K, V> cache = caches.get(level);
+        Weighted<K, V> weighted = weighted(level);
+        boolean held = holds(level, key);
+        V previous = weighted == null ? cache.put(key, value) : weighted.put(key, value, weight);
+        if (!held) {
+            sizes[level]++;
+        }
+        directory.put(key, level);
+        orders.get(level).put(key, Boolean.TRUE);
+        strategy.recordAccess(cache, key, true);
+        return previous;
+    }
+
+    /**
+     * Moves the key read from the first tier to the end of its order. Tiers keeping their own access order
+     * are left to it, so readers holding only the read lock don't have to synchronize.
+     */
+    private void touch(Object key) {
+        if (!(caches.get(0) instanceof AccessOrdered)) {
+            LinkedHashMap<Object, Boolean> order = orders.get(0);
+            synchronized (order) {
+                order.get(key);
+            }
+        }
+    }
+
+    /**
+     * Entry of the tier to demote to the next one, null if the tier has none.
+     */
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> victim(int level) {
+        Cache<K, V> cache = caches.get(level);
+        if (strategy instanceof LastRecentlyUsedStrategy && cache instanceof AccessOrdered) {
+            return ((AccessOrdered<K, V>) cache).getEldestEntry();
+        }
+        if (strategy instanceof LastRecentlyUsedStrategy || strategy instanceof RandomStrategy) {
+            LinkedHashMap<Object, Boolean> order = orders.get(level);
+            while (!order.isEmpty()) {
+                Iterator<Object> keys = order.keySet().iterator();
+                if (strategy instanceof RandomStrategy) {
+                    for (int skip = random.nextInt(order.size()); skip > 0; skip--) {
+                        keys.next();
+                    }
+                }
+                Object key = keys.next();
+                Entry<K, V> entry = cache.getEntry(key);
+                if (entry != null) {
+                    return entry;
+                }
+                // expired or collected in the tier
+                cache.remove(key);
+                forget(level, key);
+            }
+            return null;
+        }
+        return strategy.poll(cache);
+    }
+
+    /**
+     * Moves an entry from the given tier to the first one. The cascade of demotions it may cause stops at the tier
+     * the entry was taken from, so at most one entry per tier is moved.
+     */
+    @SuppressWarnings("unchecked")
+    private V promote(int level, Object key) {
+        V value = detach(level, key);
+        if (value != null) {
+            try {
+                insert(0, (K) key, value);
+            } catch (CacheException e) {
+                attach(level, (K) key, value);
+                throw e;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Stores the entry in the given tier, first demoting the strategy's victims to the next tier until there is
+     * room for it. A tier bounded by weight may need several victims, an entry heavier than the whole tier goes
+     * to the next one. Nothing is changed when the last tier is full.
+     */
+    private V insert(int level, K key, V value) {
+        Cache<K, V> cache = caches.get(level);
+        Weighted<K, V> weighted = weighted(level);
+        // weighed once, the tier is given the weight instead of weighing the entry again
+        int weight = weighted == null ? 0 : weighted.weigh(key, value);
+        boolean present = holds(level, key);
+        boolean cleaned = false;
+        V previous = null;
+        while (!hasRoom(level, key, weight, present)) {
+            if (!cleaned && cache instanceof Expiring) {
+                // expired entries of the tier make room before anything is demoted
+                ((Expiring<?, ?>) cache).cleanUp();
+                expunge();
+                cleaned = true;
+                present = holds(level, key);
+                continue;
+            }
+            if (level == caches.size() - 1) {
+                throw new CacheException("Cannot store");
+            }
+            Entry<K, V> victim = weighted != null && weight > weighted.getWeightLimit() ? null : victim(level);
+            if (victim == null) {
+                if (present) {
+                    previous = detach(level, key);
+                }
+                V v = insert(level + 1, key, value);
+                return previous != null ? previous : v;
+            }
+            K victimKey = victim.getKey();
+            if (victimKey.equals(key)) {
+                // the old value of the entry is replaced anyway
+                previous = detach(level, key);
+                present = false;
+                continue;
+            }
+            V victimValue = victim.getValue(true);
+            int primary = levelOf(victimKey);
+            if (victimValue == null || primary == level && copies.containsKey(victimKey)) {
+                // a collected value is gone, an entry with a copy is left to the copy
+                cache.remove(victimKey);
+                forget(level, victimKey);
+                continue;
+            }
+            insert(level + 1, victimKey, victimValue);
+            if (primary != level) {
+                // the copy of an entry of an upper tier moved down, the entry stays where it is
+                copies.put(victimKey, levelOf(victimKey));
+                directory.put(victimKey, primary);
+            }
+            cache.remove(victimKey);
+            sizes[level]--;
+            orders.get(level).remove(victimKey);
+            strategy.recordRemoval(cache, victimKey);
+        }
+        V v = store(level, key, value, weight);
+        if (isInclusive(level)) {
+            copy(level, key, value);
+        }
+        return previous != null ? previous : v;
+    }
+
+    /**
+     * The tier as a weighted cache if it is bounded by weight, null otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private Weighted<K, V> weighted(int level) {
+        Cache<K, V> cache = caches.get(level);
+        if (cache instanceof Weighted && ((Weighted<K, V>) cache).getWeightLimit() > 0) {
+            return (Weighted<K, V>) cache;
+        }
+        return null;
+    }
+
+    private boolean hasRoom(int level, K key, int weight, boolean present) {
+        Cache<K, V> cache = caches.get(level);
+        Weighted<K, V> weighted = weighted(level);
+        if (weighted != null) {
+            long total = weighted.getWeight() + weight;
+            if (present) {
+                // the current value is replaced, its weight is the one stored with it
+                Entry<K, V> current = cache.getEntry(key);
+                if (current instanceof AbstractCache.SimpleEntry) {
+                    total -= ((AbstractCache<?, ?>.SimpleEntry<?, ?>) current).getWeight();
+                }
+            }
+            return total <= weighted.getWeightLimit();
+        }
+        return present || sizes[level] < cache.getLimit();
+    }
+
+    @Override
+    public void clear() {
+        try {
+            writeLock.lock();
+            for (int level = 0; level < caches.size(); level++) {
+                caches.get(level).clear();
+                orders.get(level).clear();
+                strategy.recordClear(caches.get(level));
+            }
+            removals.clear();
+            copies.clear();
+            directory.clear();
+            Arrays.fill(sizes, 0);
+            strategy.recordClear(this);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        throw new UnsupportedOperationException("not implemented yet");
+    }
+
+    @Override
+    public Collection<V> values() {
+        throw new UnsupportedOperationException("not implemented yet");
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        throw new UnsupportedOperationException("not implemented yet");
+    }
+
+    public void reorganize() {
+        try {
+            writeLock.lock();
+            expunge();
+            List<Entry<K, V>> sorted = getEntries();
+            Collections.sort(sorted, strategy.getComparator(this));
+            // the values are taken before the tiers let go of them, collected ones are gone
+            List<Map.Entry<K, V>> entries = new ArrayList<>(sorted.size());
+            for (int i = sorted.size() - 1; i >= 0; i--) {
+                V value = sorted.get(i).getValue(true);
+                if (value != null) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(sorted.get(i).getKey(), value));
+                }
+            }
+            for (int level = 0; level < caches.size(); level++) {
+                caches.get(level).clear();
+                orders.get(level).clear();
+                strategy.recordClear(caches.get(level));
+            }
+            copies.clear();
+            directory.clear();
+            Arrays.fill(sizes, 0);
+
+            for (int level = 0; level < caches.size(); level++) {
+                Cache<K, V> cache = caches.get(level);
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    Map.Entry<K, V> entry = entries.get(i);
+                    int available = cache.getLimit() - sizes[level];
+                    if (available == 0) {
+                        break;
+                    }
+                    Weighted<K, V> weighted = weighted(level);
+                    int weight = weighted == null ? 0 : weighted.weigh(entry.getKey(), entry.getValue());
+                    if (!hasRoom(level, entry.getKey(), weight, false)) {
+                        // too heavy for the rest of this tier, lighter entries may still fit
+                        continue;
+                    }
+                    store(level, entry.getKey(), entry.getValue(), weight);
+                    if (isInclusive(level)) {
+                        copy(level, entry.getKey(), entry.getValue());
+                    }
+                    entries.remove(i);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static class Removal {
+        private final int level;
+        private final Object key;
+
+        private Removal(int level, Object key) {
+            this.level = level;
+            this.key = key;
+        }
+    }
+}
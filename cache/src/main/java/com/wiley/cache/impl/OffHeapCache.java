@@ -0,0 +1,584 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.AbstractCache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.serializers.CompactSerializer;
+import com.wiley.cache.serializers.Serializer;
+import com.wiley.cache.serializers.Serializers;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache which keeps serialized keys and values outside of the Java heap, in direct {@link ByteBuffer} slabs.
+ * A slab of {@code cache.offheap.slab.size} bytes is assigned to one size class and split into equal chunks;
+ * every entry takes the smallest chunk it fits in. Slabs are allocated on demand until
+ * {@code cache.offheap.size} bytes are used, then a slab without live chunks is taken from its size class. The index is an open addressing table of primitive arrays,
+ * so the garbage collector sees only a handful of objects however many entries are stored.
+ * <p>
+ * Chunk layout: {@code int keyLength, int valueLength, long accessTime, key, value}.
+ */
+public class OffHeapCache<K, V> extends AbstractCache<K, V> {
+
+    private final static Logger logger = Logger.getLogger(OffHeapCache.class.getName());
+
+    public static final String LIMIT = "cache.offheap.limit";
+    public static final String SIZE_LIMIT = "cache.offheap.size";
+    public static final String SLAB_SIZE = "cache.offheap.slab.size";
+
+    private static final int CHUNK_HEADER_SIZE = 16;
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final double CHUNK_GROWTH = 1.25;
+
+    private long sizeLimit;
+    private int slabSize;
+
+    private long[] addresses;
+    private int[] hashes;
+    private int mask;
+    private int count;
+
+    private int[] chunkSizes;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final List<Integer> slabClasses = new ArrayList<>();
+    private final Deque<ByteBuffer> unassigned = new ArrayDeque<>();
+    private long[][] freeChunks;
+    private int[] freeCounts;
+    private int[] chunkCounts;
+    private int[] liveChunks = new int[0];
+
+    private Serializer<? super K> keySerializer = new CompactSerializer();
+    private Serializer<? super V> valueSerializer = new CompactSerializer();
+
+    public OffHeapCache() {
+    }
+
+    public OffHeapCache(Properties props) {
+        super(props);
+    }
+
+    @Override
+    protected void init() {
+        try {
+            this.limit = Math.max(0, Integer.parseInt(properties.getProperty(LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for limit property", e);
+            this.limit = Integer.valueOf(defaultProperties.getProperty(LIMIT));
+        }
+        logger.info("Off-heap cache limit set to " + limit);
+
+        try {
+            this.sizeLimit = Math.max(0, Long.parseLong(properties.getProperty(SIZE_LIMIT)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for size limit property", e);
+            this.sizeLimit = Long.valueOf(defaultProperties.getProperty(SIZE_LIMIT));
+        }
+        logger.info("Off-heap size limit set to " + sizeLimit);
+
+        try {
+            this.slabSize = Math.max(MIN_CHUNK_SIZE, Integer.parseInt(properties.getProperty(SLAB_SIZE)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for slab size property", e);
+            this.slabSize = Integer.valueOf(defaultProperties.getProperty(SLAB_SIZE));
+        }
+        logger.info("Off-heap slab size set to " + slabSize);
+
+        List<Integer> sizes = new ArrayList<>();
+        for (int size = MIN_CHUNK_SIZE; size < slabSize; size = (int) (size * CHUNK_GROWTH + 7) & ~7) {
+            sizes.add(size);
+        }
+        sizes.add(slabSize);
+        chunkSizes = new int[sizes.size()];
+        for (int i = 0; i < chunkSizes.length; i++) {
+            chunkSizes[i] = sizes.get(i);
+        }
+        freeChunks = new long[chunkSizes.length][];
+        freeCounts = new int[chunkSizes.length];
+        chunkCounts = new int[chunkSizes.length];
+
+        int capacity = 16;
+        while (capacity * 3 < limit * 4 + 4) {
+            capacity <<= 1;
+        }
+        addresses = new long[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    @Override
+    public int size() {
+        try {
+            readLock.lock();
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of off-heap bytes taken by slabs, used or free.
+     */
+    public long memorySize() {
+        try {
+            readLock.lock();
+            return (long) slabs.size() * slabSize;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        try {
+            readLock.lock();
+            return find(key, keyBytes(key)) >= 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        try {
+            readLock.lock();
+            for (int i = 0; i < addresses.length; i++) {
+                if (addresses[i] != 0 && readValue(addresses[i]).equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        long start = stats.start();
+        try {
+            readLock.lock();
+            int slot = find(key, keyBytes(key));
+            if (slot < 0) {
+                stats.recordGet(start, false);
+                return null;
+            }
+            slab(addresses[slot]).putLong(offset(addresses[slot]) + 8, System.nanoTime());
+            stats.recordGet(start, true);
+            return readValue(addresses[slot]);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public SimpleEntry<K, V> getEntry(Object key) {
+        try {
+            readLock.lock();
+            int slot = find(key, keyBytes(key));
+            return slot < 0 ? null : readEntry(addresses[slot]);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null  || value == null) {
+            throw new NullPointerException("Key and value cannot be null");
+        }
+        long start = stats.start();
+        byte[] keyBytes = Serializers.toBytes(keySerializer, key);
+        byte[] valueBytes = Serializers.toBytes(valueSerializer, value);
+        int size = CHUNK_HEADER_SIZE + keyBytes.length + valueBytes.length;
+        if (size > slabSize) {
+            throw new CacheException("Entry of " + size + " bytes does not fit into a slab of " + slabSize + " bytes");
+        }
+        try {
+            writeLock.lock();
+            int slot = find(key, keyBytes);
+            if (slot < 0 && count >= limit) {
+                throw new CacheException("Cache limit is exceeded. Limit: " + limit);
+            }
+            V currentValue = slot >= 0 ? readValue(addresses[slot]) : null;
+            long address = allocate(size);
+            boolean inPlace = false;
+            if (address == 0 && slot >= 0 && chunkClass(size) == slabClasses.get(slabIndex(addresses[slot]))) {
+                // the chunk of the current value may be the only one of this size class, it is overwritten
+                address = addresses[slot];
+                inPlace = true;
+            }
+            if (address == 0) {
+                // the current entry is left as it is
+                throw new CacheException("Off-heap size is exceeded. Limit: " + sizeLimit);
+            }
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            slab.putInt(offset, keyBytes.length);
+            slab.putInt(offset + 4, valueBytes.length);
+            slab.putLong(offset + 8, System.nanoTime());
+            write(slab, offset + CHUNK_HEADER_SIZE, keyBytes);
+            write(slab, offset + CHUNK_HEADER_SIZE + keyBytes.length, valueBytes);
+
+            if (slot < 0) {
+                insert(hash(key), address);
+            } else if (!inPlace) {
+                free(addresses[slot]);
+                addresses[slot] = address;
+            }
+            stats.recordPut(start);
+            return currentValue;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        try {
+            writeLock.lock();
+            int slot = find(key, keyBytes(key));
+            if (slot < 0) {
+                return null;
+            }
+            V value = readValue(addresses[slot]);
+            free(addresses[slot]);
+            delete(slot);
+            return value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the keys under a single acquisition of the read lock.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        int misses = 0;
+        try {
+            readLock.lock();
+            for (K key : keys) {
+                int slot = find(key, Serializers.toBytes(keySerializer, key));
+                if (slot < 0) {
+                    misses++;
+                    continue;
+                }
+                slab(addresses[slot]).putLong(offset(addresses[slot]) + 8, System.nanoTime());
+                values.put(key, readValue(addresses[slot]));
+            }
+        } finally {
+            readLock.unlock();
+        }
+        stats.recordGets(values.size(), misses);
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        try {
+            writeLock.lock();
+            for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            writeLock.lock();
+            Arrays.fill(addresses, 0);
+            Arrays.fill(hashes, 0);
+            count = 0;
+            // slabs stay allocated and may be assigned to any size class again
+            unassigned.addAll(slabs);
+            slabs.clear();
+            slabClasses.clear();
+            Arrays.fill(freeChunks, null);
+            Arrays.fill(freeCounts, 0);
+            Arrays.fill(chunkCounts, 0);
+            liveChunks = new int[0];
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        try {
+            readLock.lock();
+            Set<K> set = new HashSet<>();
+            for (long address : addresses) {
+                if (address != 0) {
+                    set.add(readKey(address));
+                }
+            }
+            return set;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<V> values() {
+        try {
+            readLock.lock();
+            Collection<V> collection = new ArrayList<>();
+            for (long address : addresses) {
+                if (address != 0) {
+                    collection.add(readValue(address));
+                }
+            }
+            return collection;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        try {
+            readLock.lock();
+            Set<Map.Entry<K, V>> set = new HashSet<>();
+            for (long address : addresses) {
+                if (address != 0) {
+                    set.add(new AbstractMap.SimpleEntry<>(readKey(address), readValue(address)));
+                }
+            }
+            return set;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        try {
+            readLock.lock();
+            List<Entry<K, V>> entries = new ArrayList<>();
+            for (long address : addresses) {
+                if (address != 0) {
+                    entries.add(readEntry(address));
+                }
+            }
+            return entries;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public void setKeySerializer(Serializer<? super K> keySerializer) {
+        this.keySerializer = keySerializer;
+    }
+
+    public void setValueSerializer(Serializer<? super V> valueSerializer) {
+        this.valueSerializer = valueSerializer;
+    }
+
+    private int find(Object key, byte[] keyBytes) {
+        int hash = hash(key);
+        for (int slot = hash & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && keyEquals(addresses[slot], keyBytes)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int hash, long address) {
+        int slot = hash & mask;
+        while (addresses[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        addresses[slot] = address;
+        hashes[slot] = hash;
+        count++;
+    }
+
+    /**
+     * Removes the slot shifting back the following entries of the probe sequence, so no tombstones are needed.
+     */
+    private void delete(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask; addresses[next] != 0; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                addresses[hole] = addresses[next];
+                hashes[hole] = hashes[next];
+                hole = next;
+            }
+        }
+        addresses[hole] = 0;
+        hashes[hole] = 0;
+        count--;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean keyEquals(long address, byte[] keyBytes) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        if (slab.getInt(offset) != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (slab.get(offset + CHUNK_HEADER_SIZE + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the smallest size class whose chunks hold {@code size} bytes.
+     */
+    private int chunkClass(int size) {
+        int chunkClass = 0;
+        while (chunkSizes[chunkClass] < size) {
+            chunkClass++;
+        }
+        return chunkClass;
+    }
+
+    /**
+     * Returns the address of a free chunk of at least {@code size} bytes, or 0 when the budget is used up.
+     * An address is {@code (slab index + 1) << 32 | offset}.
+     */
+    private long allocate(int size) {
+        int chunkClass = chunkClass(size);
+        if (freeCounts[chunkClass] == 0 && !addSlab(chunkClass)) {
+            return 0;
+        }
+        long address = freeChunks[chunkClass][--freeCounts[chunkClass]];
+        liveChunks[slabIndex(address)]++;
+        return address;
+    }
+
+    private boolean addSlab(int chunkClass) {
+        int index;
+        ByteBuffer slab = unassigned.poll();
+        if (slab != null || (long) (slabs.size() + 1) * slabSize <= sizeLimit) {
+            slabs.add(slab != null ? slab : ByteBuffer.allocateDirect(slabSize));
+            slabClasses.add(chunkClass);
+            index = slabs.size() - 1;
+            liveChunks = Arrays.copyOf(liveChunks, slabs.size());
+        } else {
+            // the budget is used up, a slab whose chunks are all free changes its size class
+            index = emptySlab();
+            if (index < 0) {
+                return false;
+            }
+            release(index);
+            slabClasses.set(index, chunkClass);
+        }
+        long slabIndex = index + 1;
+        int chunkSize = chunkSizes[chunkClass];
+        int chunks = slabSize / chunkSize;
+        // the free list has to hold every chunk of the class, since all of them may be freed
+        chunkCounts[chunkClass] += chunks;
+        long[] free = freeChunks[chunkClass];
+        if (free == null || free.length < chunkCounts[chunkClass]) {
+            free = Arrays.copyOf(free == null ? new long[0] : free, chunkCounts[chunkClass]);
+            freeChunks[chunkClass] = free;
+        }
+        for (int i = chunks - 1; i >= 0; i--) {
+            free[freeCounts[chunkClass]++] = slabIndex << 32 | (long) i * chunkSize;
+        }
+        return true;
+    }
+
+    private int emptySlab() {
+        for (int i = 0; i < liveChunks.length; i++) {
+            if (liveChunks[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Takes the chunks of an empty slab out of the free list of its size class.
+     */
+    private void release(int index) {
+        int chunkClass = slabClasses.get(index);
+        long[] free = freeChunks[chunkClass];
+        int kept = 0;
+        for (int i = 0; i < freeCounts[chunkClass]; i++) {
+            if (slabIndex(free[i]) != index) {
+                free[kept++] = free[i];
+            }
+        }
+        freeCounts[chunkClass] = kept;
+        chunkCounts[chunkClass] -= slabSize / chunkSizes[chunkClass];
+    }
+
+    private void free(long address) {
+        int index = slabIndex(address);
+        int chunkClass = slabClasses.get(index);
+        freeChunks[chunkClass][freeCounts[chunkClass]++] = address;
+        liveChunks[index]--;
+    }
+
+    private ByteBuffer slab(long address) {
+        return slabs.get(slabIndex(address));
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32) - 1;
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static void write(ByteBuffer slab, int offset, byte[] bytes) {
+        ByteBuffer buffer = slab.duplicate();
+        buffer.position(offset);
+        buffer.put(bytes);
+    }
+
+    private static byte[] read(ByteBuffer slab, int offset, int length) {
+        ByteBuffer buffer = slab.duplicate();
+        buffer.position(offset);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Bytes of a key passed to a method of the map interface, which is only looked up.
+     */
+    @SuppressWarnings("unchecked")
+    private byte[] keyBytes(Object key) {
+        return Serializers.toBytes(keySerializer, (K) key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private K readKey(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        return (K) Serializers.fromBytes(keySerializer, read(slab, offset + CHUNK_HEADER_SIZE, slab.getInt(offset)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V readValue(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int keyLength = slab.getInt(offset);
+        return (V) Serializers.fromBytes(valueSerializer, read(slab, offset + CHUNK_HEADER_SIZE + keyLength, slab.getInt(offset + 4)));
+    }
+
+    private SimpleEntry<K, V> readEntry(long address) {
+        SimpleEntry<K, V> entry = new SimpleEntry<>(readKey(address), readValue(address));
+        entry.setLastAccessTime(slab(address).getLong(offset(address) + 8));
+        return entry;
+    }
+}
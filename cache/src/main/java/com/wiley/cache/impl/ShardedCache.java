@@ -0,0 +1,405 @@
+package com.wiley.cache.impl;
+
+import com.wiley.cache.AbstractCache;
+import com.wiley.cache.Cache;
+import com.wiley.cache.CacheException;
+import com.wiley.cache.ShardFactory;
+import com.wiley.cache.stats.CacheStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache partitioned by the hash of the key into independent shards, so operations on different shards
+ * don't contend on one lock. The shards are usually whole stacks, e.g. a {@link MultiLevelCache} of a memory
+ * and a file cache, created by a {@link ShardFactory} with the limits divided evenly among them.
+ * <p>
+ * Single key operations go to one shard. Bulk operations and {@link #clear()} are split by shard and run on all
+ * of them in parallel, {@link #size()} and the statistics add up the counters of the shards.
+ */
+public class ShardedCache<K, V> extends AbstractCache<K, V> implements Closeable {
+
+    private final static Logger logger = Logger.getLogger(ShardedCache.class.getName());
+
+    public static final String SHARDS = "cache.shards";
+
+    // limits which are divided among the shards
+    private static final String[] LIMITS = {MemoryCache.LIMIT, MemoryCache.WEIGHT_LIMIT, OffHeapCache.LIMIT,
+            OffHeapCache.SIZE_LIMIT, FileCache.FILES_LIMIT, FileCache.SIZE_LIMIT};
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "sharded-cache");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private int shardCount;
+    private List<Cache<K, V>> shards;
+
+    public ShardedCache(ShardFactory<K, V> factory) {
+        open(factory);
+    }
+
+    public ShardedCache(Properties properties, ShardFactory<K, V> factory) {
+        super(properties);
+        open(factory);
+    }
+
+    /**
+     * Creates a cache of the given shards, their limits are used as they are.
+     */
+    public ShardedCache(List<Cache<K, V>> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard should be provided");
+        }
+        this.shardCount = shards.size();
+        this.shards = new ArrayList<>(shards);
+    }
+
+    @Override
+    protected void init() {
+        try {
+            this.shardCount = Math.max(1, Integer.parseInt(properties.getProperty(SHARDS)));
+        } catch(NumberFormatException e) {
+            logger.log(Level.WARNING, "wrong value for shards property", e);
+            this.shardCount = Integer.valueOf(defaultProperties.getProperty(SHARDS));
+        }
+        logger.info("Shards set to " + shardCount);
+    }
+
+    private void open(ShardFactory<K, V> factory) {
+        shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(factory.create(i, shardProperties()));
+        }
+    }
+
+    /**
+     * Properties of this cache with the limits divided by the number of shards, rounded up.
+     */
+    private Properties shardProperties() {
+        Properties shardProperties = new Properties();
+        for (String name : properties.stringPropertyNames()) {
+            shardProperties.setProperty(name, properties.getProperty(name));
+        }
+        for (String name : LIMITS) {
+            String value = properties.getProperty(name);
+            try {
+                long limit = Long.parseLong(value);
+                shardProperties.setProperty(name, String.valueOf((limit + shardCount - 1) / shardCount));
+            } catch (NumberFormatException ignored) {
+                // left to the shard, which reports it
+            }
+        }
+        return shardProperties;
+    }
+
+    /**
+     * The shards in the order of their indexes.
+     */
+    public List<Cache<K, V>> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * Index of the shard of the key. The hash code is mixed so keys with sequential hashes spread over the shards.
+     */
+    int shardOf(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (int) (((h & 0xffffffffL) * shardCount) >>> 32);
+    }
+
+    private Cache<K, V> shard(Object key) {
+        return shards.get(shardOf(key));
+    }
+
+    @Override
+    public List<Entry<K, V>> getEntries() {
+        List<Entry<K, V>> entries = new ArrayList<>();
+        for (Cache<K, V> shard : shards) {
+            entries.addAll(shard.getEntries());
+        }
+        return entries;
+    }
+
+    @Override
+    public Entry<K, V> getEntry(Object key) {
+        return shard(key).getEntry(key);
+    }
+
+    @Override
+    public int getLimit() {
+        long limit = 0;
+        for (Cache<K, V> shard : shards) {
+            limit += shard.getLimit();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, limit);
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Cache<K, V> shard : shards) {
+            size += shard.size();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Cache<K, V> shard : shards) {
+            if (!shard.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return shard(key).containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (Cache<K, V> shard : shards) {
+            if (shard.containsValue(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        return shard(key).get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        return shard(key).put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return shard(key).remove(key);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        List<Callable<Map<K, V>>> tasks = new ArrayList<>();
+        List<List<K>> batches = groupByShard(keys);
+        for (int i = 0; i < shardCount; i++) {
+            final Cache<K, V> shard = shards.get(i);
+            final List<K> batch = batches.get(i);
+            if (!batch.isEmpty()) {
+                tasks.add(new Callable<Map<K, V>>() {
+                    @Override
+                    public Map<K, V> call() {
+                        return shard.getAll(batch);
+                    }
+                });
+            }
+        }
+        Map<K, V> values = new LinkedHashMap<>();
+        for (Map<K, V> found : fanOut(tasks)) {
+            values.putAll(found);
+        }
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        List<Map<K, V>> batches = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            batches.add(new LinkedHashMap<K, V>());
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            if (entry.getKey() == null) {
+                throw new NullPointerException("Key cannot be null");
+            }
+            batches.get(shardOf(entry.getKey())).put(entry.getKey(), entry.getValue());
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            final Cache<K, V> shard = shards.get(i);
+            final Map<K, V> batch = batches.get(i);
+            if (!batch.isEmpty()) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        shard.putAll(batch);
+                        return null;
+                    }
+                });
+            }
+        }
+        fanOut(tasks);
+    }
+
+    @Override
+    public void removeAll(Collection<?> keys) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        List<List<Object>> batches = groupByShard(keys);
+        for (int i = 0; i < shardCount; i++) {
+            final Cache<K, V> shard = shards.get(i);
+            final List<Object> batch = batches.get(i);
+            if (!batch.isEmpty()) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        shard.removeAll(batch);
+                        return null;
+                    }
+                });
+            }
+        }
+        fanOut(tasks);
+    }
+
+    @Override
+    public void clear() {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (final Cache<K, V> shard : shards) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    shard.clear();
+                    return null;
+                }
+            });
+        }
+        fanOut(tasks);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> keys = new HashSet<>();
+        for (Cache<K, V> shard : shards) {
+            keys.addAll(shard.keySet());
+        }
+        return keys;
+    }
+
+    @Override
+    public Collection<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Cache<K, V> shard : shards) {
+            values.addAll(shard.values());
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entries = new HashSet<>();
+        for (Cache<K, V> shard : shards) {
+            entries.addAll(shard.entrySet());
+        }
+        return entries;
+    }
+
+    /**
+     * Sum of the statistics of the shards.
+     */
+    @Override
+    public CacheStats getStats() {
+        CacheStats total = shards.get(0).getStats();
+        for (int i = 1; i < shardCount; i++) {
+            total = total.plus(shards.get(i).getStats());
+        }
+        return total;
+    }
+
+    /**
+     * Closes the shards which hold resources.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Cache<K, V> shard : shards) {
+            if (shard instanceof Closeable) {
+                ((Closeable) shard).close();
+            }
+        }
+    }
+
+    private <T> List<List<T>> groupByShard(Collection<? extends T> keys) {
+        List<List<T>> batches = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            batches.add(new ArrayList<T>());
+        }
+        for (T key : keys) {
+            batches.get(shardOf(key)).add(key);
+        }
+        return batches;
+    }
+
+    /**
+     * Runs the tasks in parallel, the last one in the calling thread, and waits for all of them.
+     * The first failure is rethrown once every task has finished.
+     */
+    private <T> List<T> fanOut(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.isEmpty()) {
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(tasks.size() - 1);
+        for (int i = 0; i < tasks.size() - 1; i++) {
+            futures.add(executor.submit(tasks.get(i)));
+        }
+        RuntimeException failure = null;
+        T last = null;
+        try {
+            last = tasks.get(tasks.size() - 1).call();
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (Exception e) {
+            failure = new CacheException("Shard operation failed", e);
+        }
+        boolean interrupted = false;
+        for (Future<T> future : futures) {
+            while (true) {
+                try {
+                    results.add(future.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                                : new CacheException("Shard operation failed", e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        results.add(last);
+        return results;
+    }
+}
@@ -0,0 +1,105 @@
+package com.wiley.cache.serializers;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializer of arbitrary objects which writes a one byte type tag followed by the object.
+ * Strings, boxed primitives and byte arrays use the built-in {@link Serializers},
+ * user types are encoded by the serializers registered for them and
+ * any other {@link java.io.Serializable} object falls back to Java serialization.
+ * <p>
+ * Tags of user types are part of the stored data, so a type has to be registered
+ * with the same id wherever the data is read.
+ */
+public class CompactSerializer implements Serializer<Object> {
+
+    public static final int MIN_USER_ID = 16;
+    public static final int MAX_USER_ID = 255;
+
+    private static final int JAVA = 15;
+
+    private final Map<Class<?>, Registration> byType = new HashMap<>();
+    private final Registration[] byTag = new Registration[MAX_USER_ID + 1];
+
+    public CompactSerializer() {
+        add(1, String.class, Serializers.STRING);
+        add(2, Integer.class, Serializers.INTEGER);
+        add(3, Long.class, Serializers.LONG);
+        add(4, Boolean.class, Serializers.BOOLEAN);
+        add(5, Byte.class, Serializers.BYTE);
+        add(6, Short.class, Serializers.SHORT);
+        add(7, Character.class, Serializers.CHARACTER);
+        add(8, Float.class, Serializers.FLOAT);
+        add(9, Double.class, Serializers.DOUBLE);
+        add(10, byte[].class, Serializers.BYTES);
+    }
+
+    /**
+     * Registers a compact encoding of the user type under the id, which must be between
+     * {@link #MIN_USER_ID} and {@link #MAX_USER_ID}.
+     */
+    public synchronized <T> CompactSerializer register(int id, Class<T> type, Serializer<T> serializer) {
+        if (id < MIN_USER_ID || id > MAX_USER_ID) {
+            throw new IllegalArgumentException("id should be between " + MIN_USER_ID + " and " + MAX_USER_ID);
+        }
+        if (byTag[id] != null) {
+            throw new IllegalArgumentException("id " + id + " is already registered for " + byTag[id].type.getName());
+        }
+        add(id, type, serializer);
+        return this;
+    }
+
+    private <T> void add(int id, Class<T> type, Serializer<T> serializer) {
+        Registration registration = new Registration(id, type, serializer);
+        byType.put(type, registration);
+        byTag[id] = registration;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(Object object, DataOutput out) throws IOException {
+        Registration registration;
+        synchronized (this) {
+            registration = byType.get(object.getClass());
+        }
+        if (registration == null) {
+            out.writeByte(JAVA);
+            Serializers.JAVA.write(object, out);
+        } else {
+            out.writeByte(registration.id);
+            ((Serializer<Object>) registration.serializer).write(object, out);
+        }
+    }
+
+    @Override
+    public Object read(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        if (tag == JAVA) {
+            return Serializers.JAVA.read(in);
+        }
+        Registration registration;
+        synchronized (this) {
+            registration = byTag[tag];
+        }
+        if (registration == null) {
+            throw new IOException("Unknown type id " + tag);
+        }
+        return registration.serializer.read(in);
+    }
+
+    private static class Registration {
+        private final int id;
+        private final Class<?> type;
+        private final Serializer<?> serializer;
+
+        private Registration(int id, Class<?> type, Serializer<?> serializer) {
+            this.id = id;
+            this.type = type;
+            this.serializer = serializer;
+        }
+    }
+}
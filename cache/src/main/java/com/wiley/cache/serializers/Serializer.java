@@ -0,0 +1,16 @@
+package com.wiley.cache.serializers;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts cache keys and values to bytes and back. Implementations have to be self-delimiting:
+ * {@code read} consumes exactly the bytes written by {@code write}.
+ */
+public interface Serializer<T> {
+
+    void write(T object, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,188 @@
+package com.wiley.cache.serializers;
+
+import com.wiley.cache.CacheException;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Built-in serializers for strings, boxed primitives and byte arrays, and a Java serialization fallback.
+ */
+public final class Serializers {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Serializers() {
+    }
+
+    public static final Serializer<String> STRING = new Serializer<String>() {
+        @Override
+        public void write(String object, DataOutput out) throws IOException {
+            byte[] bytes = object.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+    };
+
+    public static final Serializer<Integer> INTEGER = new Serializer<Integer>() {
+        @Override
+        public void write(Integer object, DataOutput out) throws IOException {
+            out.writeInt(object);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    public static final Serializer<Long> LONG = new Serializer<Long>() {
+        @Override
+        public void write(Long object, DataOutput out) throws IOException {
+            out.writeLong(object);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    public static final Serializer<Boolean> BOOLEAN = new Serializer<Boolean>() {
+        @Override
+        public void write(Boolean object, DataOutput out) throws IOException {
+            out.writeBoolean(object);
+        }
+
+        @Override
+        public Boolean read(DataInput in) throws IOException {
+            return in.readBoolean();
+        }
+    };
+
+    public static final Serializer<Byte> BYTE = new Serializer<Byte>() {
+        @Override
+        public void write(Byte object, DataOutput out) throws IOException {
+            out.writeByte(object);
+        }
+
+        @Override
+        public Byte read(DataInput in) throws IOException {
+            return in.readByte();
+        }
+    };
+
+    public static final Serializer<Short> SHORT = new Serializer<Short>() {
+        @Override
+        public void write(Short object, DataOutput out) throws IOException {
+            out.writeShort(object);
+        }
+
+        @Override
+        public Short read(DataInput in) throws IOException {
+            return in.readShort();
+        }
+    };
+
+    public static final Serializer<Character> CHARACTER = new Serializer<Character>() {
+        @Override
+        public void write(Character object, DataOutput out) throws IOException {
+            out.writeChar(object);
+        }
+
+        @Override
+        public Character read(DataInput in) throws IOException {
+            return in.readChar();
+        }
+    };
+
+    public static final Serializer<Float> FLOAT = new Serializer<Float>() {
+        @Override
+        public void write(Float object, DataOutput out) throws IOException {
+            out.writeFloat(object);
+        }
+
+        @Override
+        public Float read(DataInput in) throws IOException {
+            return in.readFloat();
+        }
+    };
+
+    public static final Serializer<Double> DOUBLE = new Serializer<Double>() {
+        @Override
+        public void write(Double object, DataOutput out) throws IOException {
+            out.writeDouble(object);
+        }
+
+        @Override
+        public Double read(DataInput in) throws IOException {
+            return in.readDouble();
+        }
+    };
+
+    public static final Serializer<byte[]> BYTES = new Serializer<byte[]>() {
+        @Override
+        public void write(byte[] object, DataOutput out) throws IOException {
+            out.writeInt(object.length);
+            out.write(object);
+        }
+
+        @Override
+        public byte[] read(DataInput in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return bytes;
+        }
+    };
+
+    /**
+     * Java serialization of {@link Serializable} objects, framed with the length of the stream.
+     */
+    public static final Serializer<Object> JAVA = new Serializer<Object>() {
+        @Override
+        public void write(Object object, DataOutput out) throws IOException {
+            if (!(object instanceof Serializable)) {
+                throw new NotSerializableException(object.getClass().getName());
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream os = new ObjectOutputStream(bytes)) {
+                os.writeObject(object);
+            }
+            BYTES.write(bytes.toByteArray(), out);
+        }
+
+        @Override
+        public Object read(DataInput in) throws IOException {
+            try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(BYTES.read(in)))) {
+                return is.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    };
+
+    public static <T> byte[] toBytes(Serializer<? super T> serializer, T object) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            serializer.write(object, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new CacheException("Cannot serialize " + object.getClass().getName() + ": " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static <T> T fromBytes(Serializer<T> serializer, byte[] bytes) {
+        try {
+            return serializer.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new CacheException("Cannot deserialize object: " + e.getMessage(), e);
+        }
+    }
+}
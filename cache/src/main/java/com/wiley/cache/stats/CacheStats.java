@@ -0,0 +1,167 @@
+package com.wiley.cache.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of the statistics of a cache. All counters are zero if the statistics are disabled,
+ * see {@code cache.stats.enabled}.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long putCount;
+    private final long evictionCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long[] tierHitCounts;
+    private final long uncompressedBytes;
+    private final long compressedBytes;
+    private final LatencyHistogram getLatency;
+    private final LatencyHistogram putLatency;
+
+    CacheStats(long hitCount, long missCount, long putCount, long evictionCount, long loadSuccessCount,
+               long loadFailureCount, long totalLoadTime, long[] tierHitCounts, long uncompressedBytes,
+               long compressedBytes, LatencyHistogram getLatency, LatencyHistogram putLatency) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.evictionCount = evictionCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.tierHitCounts = tierHitCounts;
+        this.uncompressedBytes = uncompressedBytes;
+        this.compressedBytes = compressedBytes;
+        this.getLatency = getLatency;
+        this.putLatency = putLatency;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Ratio of hits to requests, one if there were no requests.
+     */
+    public double getHitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    public long getPutCount() {
+        return putCount;
+    }
+
+    /**
+     * Number of entries evicted by the limit of the cache or expired.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getLoadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Total time spent loading values in nanoseconds.
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Average time of a load in nanoseconds.
+     */
+    public double getAverageLoadPenalty() {
+        long loads = getLoadCount();
+        return loads == 0 ? 0 : (double) totalLoadTime / loads;
+    }
+
+    /**
+     * Number of levels counted by {@link #getTierHitCount(int)}, zero for single level caches.
+     */
+    public int getTierCount() {
+        return tierHitCounts.length;
+    }
+
+    public long getTierHitCount(int tier) {
+        return tierHitCounts[tier];
+    }
+
+    /**
+     * Length of the values considered for compression.
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    /**
+     * Length of the values considered for compression as they were stored, values which did not
+     * get smaller are stored uncompressed.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * Ratio of the original to the stored length of the values considered for compression,
+     * one if there were none.
+     */
+    public double getCompressionRatio() {
+        return compressedBytes == 0 ? 1 : (double) uncompressedBytes / compressedBytes;
+    }
+
+    public LatencyHistogram getGetLatency() {
+        return getLatency;
+    }
+
+    public LatencyHistogram getPutLatency() {
+        return putLatency;
+    }
+
+    /**
+     * Sum of this and the other statistics, the tier hits are added level by level.
+     */
+    public CacheStats plus(CacheStats other) {
+        long[] tiers = Arrays.copyOf(tierHitCounts, Math.max(tierHitCounts.length, other.tierHitCounts.length));
+        for (int i = 0; i < other.tierHitCounts.length; i++) {
+            tiers[i] += other.tierHitCounts[i];
+        }
+        return new CacheStats(hitCount + other.hitCount, missCount + other.missCount, putCount + other.putCount,
+                evictionCount + other.evictionCount, loadSuccessCount + other.loadSuccessCount,
+                loadFailureCount + other.loadFailureCount, totalLoadTime + other.totalLoadTime, tiers,
+                uncompressedBytes + other.uncompressedBytes, compressedBytes + other.compressedBytes,
+                getLatency.plus(other.getLatency), putLatency.plus(other.putLatency));
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount + ", misses=" + missCount + ", puts=" + putCount
+                + ", evictions=" + evictionCount + ", loadSuccesses=" + loadSuccessCount
+                + ", loadFailures=" + loadFailureCount + ", totalLoadTime=" + totalLoadTime
+                + ", tierHits=" + Arrays.toString(tierHitCounts)
+                + ", compressionRatio=" + getCompressionRatio()
+                + ", getP99=" + getLatency.getPercentile(99, TimeUnit.NANOSECONDS)
+                + "ns, putP99=" + putLatency.getPercentile(99, TimeUnit.NANOSECONDS) + "ns}";
+    }
+}
@@ -0,0 +1,145 @@
+package com.wiley.cache.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets as in HdrHistogram: every power of two
+ * is split into 16 linear sub-buckets, so a recorded value is known within ~6% across the whole range
+ * of longs with less than a thousand counters.
+ * The counters are striped like {@link StripedCounter}, each recording thread updates the copy of its stripe,
+ * which is created on its first recording. The copies are padded apart and summed when the histogram is read.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final int PADDING = 16;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+
+    LatencyHistogram() {
+        stripes = new AtomicReferenceArray<>(StripedCounter.STRIPES);
+    }
+
+    private LatencyHistogram(long[] counts) {
+        stripes = new AtomicReferenceArray<>(1);
+        stripes.set(0, new AtomicLongArray(counts));
+    }
+
+    void record(long nanos) {
+        int stripe = StripedCounter.stripe();
+        AtomicLongArray counts = stripes.get(stripe);
+        if (counts == null) {
+            // the padding at both ends keeps the counters of neighbouring stripes off each other's cache lines
+            stripes.compareAndSet(stripe, null, new AtomicLongArray(PADDING + BUCKETS + PADDING));
+            counts = stripes.get(stripe);
+        }
+        counts.incrementAndGet(PADDING + indexOf(Math.max(0, nanos)));
+    }
+
+    /**
+     * Copy of the histogram which is not affected by later recordings, it is not recorded to.
+     */
+    LatencyHistogram snapshot() {
+        return new LatencyHistogram(counts());
+    }
+
+    LatencyHistogram plus(LatencyHistogram other) {
+        long[] sum = counts();
+        long[] otherCounts = other.counts();
+        for (int i = 0; i < BUCKETS; i++) {
+            sum[i] += otherCounts[i];
+        }
+        return new LatencyHistogram(sum);
+    }
+
+    /**
+     * Sum of the counters of all stripes.
+     */
+    private long[] counts() {
+        long[] counts = new long[BUCKETS];
+        for (int stripe = 0; stripe < stripes.length(); stripe++) {
+            AtomicLongArray stripeCounts = stripes.get(stripe);
+            if (stripeCounts != null) {
+                // a copy holds its counters without the padding
+                int offset = stripeCounts.length() == BUCKETS ? 0 : PADDING;
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] += stripeCounts.get(offset + i);
+                }
+            }
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        return countOf(counts());
+    }
+
+    private static long countOf(long[] counts) {
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    /**
+     * Value at the given percentile (0-100) in the given unit, the highest value of the bucket the percentile falls into.
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        long[] counts = counts();
+        long count = countOf(counts);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return unit.convert(highestValueOf(i), TimeUnit.NANOSECONDS);
+            }
+        }
+        return unit.convert(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Mean of the recorded values in nanoseconds, using the middle of each bucket.
+     */
+    public double getMean() {
+        long[] counts = counts();
+        long count = 0;
+        double total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucketCount = counts[i];
+            if (bucketCount > 0) {
+                count += bucketCount;
+                total += bucketCount * ((double) lowestValueOf(i) + highestValueOf(i)) / 2;
+            }
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long lowestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+    }
+
+    static long highestValueOf(int index) {
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowestValueOf(index + 1) - 1;
+    }
+}
@@ -0,0 +1,150 @@
+package com.wiley.cache.stats;
+
+/**
+ * Records the statistics of a cache. The counters are striped so recording from many threads does not
+ * contend on a single memory location; {@link #DISABLED} ignores everything and does not read the clock.
+ * <p>
+ * A recording is started with {@link #start()} and finished with one of the {@code record} methods:
+ * <pre>
+ *     long start = stats.start();
+ *     ...
+ *     stats.recordGet(start, value != null);
+ * </pre>
+ */
+public class StatsCounter {
+
+    public static final StatsCounter DISABLED = new StatsCounter(false, 0);
+
+    private final boolean enabled;
+    private final StripedCounter hits;
+    private final StripedCounter misses;
+    private final StripedCounter puts;
+    private final StripedCounter evictions;
+    private final StripedCounter loadSuccesses;
+    private final StripedCounter loadFailures;
+    private final StripedCounter loadTime;
+    private final StripedCounter uncompressedBytes;
+    private final StripedCounter compressedBytes;
+    private final StripedCounter[] tierHits;
+    private final LatencyHistogram getLatency;
+    private final LatencyHistogram putLatency;
+
+    public StatsCounter() {
+        this(0);
+    }
+
+    /**
+     * Creates a counter which also counts the hits of each of {@code tiers} levels.
+     */
+    public StatsCounter(int tiers) {
+        this(true, tiers);
+    }
+
+    private StatsCounter(boolean enabled, int tiers) {
+        this.enabled = enabled;
+        hits = new StripedCounter();
+        misses = new StripedCounter();
+        puts = new StripedCounter();
+        evictions = new StripedCounter();
+        loadSuccesses = new StripedCounter();
+        loadFailures = new StripedCounter();
+        loadTime = new StripedCounter();
+        uncompressedBytes = new StripedCounter();
+        compressedBytes = new StripedCounter();
+        tierHits = new StripedCounter[tiers];
+        for (int i = 0; i < tiers; i++) {
+            tierHits[i] = new StripedCounter();
+        }
+        getLatency = new LatencyHistogram();
+        putLatency = new LatencyHistogram();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start time of an operation, zero if the statistics are disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void recordGet(long start, boolean hit) {
+        if (enabled) {
+            (hit ? hits : misses).increment();
+            getLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts the hits and misses of a bulk read, its latency is not recorded.
+     */
+    public void recordGets(int hitCount, int missCount) {
+        if (enabled) {
+            hits.add(hitCount);
+            misses.add(missCount);
+        }
+    }
+
+    /**
+     * Counts a hit served by the given tier, the hit itself is recorded by {@link #recordGet(long, boolean)}.
+     */
+    public void recordTierHit(int tier) {
+        if (enabled && tier < tierHits.length) {
+            tierHits[tier].increment();
+        }
+    }
+
+    public void recordPut(long start) {
+        if (enabled) {
+            puts.increment();
+            putLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts the entries of a bulk write, its latency is not recorded.
+     */
+    public void recordPuts(int count) {
+        if (enabled) {
+            puts.add(count);
+        }
+    }
+
+    public void recordEviction() {
+        if (enabled) {
+            evictions.increment();
+        }
+    }
+
+    public void recordLoad(long start, boolean success) {
+        if (enabled) {
+            (success ? loadSuccesses : loadFailures).increment();
+            loadTime.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts a value considered for compression, {@code stored} is its length as written.
+     */
+    public void recordCompression(long original, long stored) {
+        if (enabled) {
+            uncompressedBytes.add(original);
+            compressedBytes.add(stored);
+        }
+    }
+
+    /**
+     * Current values of the counters.
+     */
+    public CacheStats snapshot() {
+        long[] tiers = new long[tierHits.length];
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = tierHits[i].sum();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), puts.sum(), evictions.sum(), loadSuccesses.sum(),
+                loadFailures.sum(), loadTime.sum(), tiers, uncompressedBytes.sum(), compressedBytes.sum(),
+                getLatency.snapshot(), putLatency.snapshot());
+    }
+}
@@ -0,0 +1,52 @@
+package com.wiley.cache.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over several cells picked by the id of the calling thread, so concurrent
+ * writers rarely hit the same cache line. Each cell is padded to 128 bytes to avoid false sharing,
+ * the value is the sum of the cells.
+ */
+class StripedCounter {
+
+    private static final int PADDING = 16;
+    static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        while (stripes < 2 * Runtime.getRuntime().availableProcessors() && stripes < 64) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long value) {
+        cells.getAndAdd(cell(), value);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int cell() {
+        return stripe() * PADDING;
+    }
+
+    /**
+     * Stripe of the calling thread, below {@link #STRIPES}.
+     */
+    static int stripe() {
+        int hash = (int) Thread.currentThread().getId() * 0x9e3779b9;
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
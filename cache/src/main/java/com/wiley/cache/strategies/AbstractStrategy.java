@@ -26,6 +26,18 @@ public abstract class AbstractStrategy implements Strategy {
         return list.get(list.size() - 1);
     }
     
+    @Override
+    public void recordAccess(Cache<?, ?> cache, Object key, boolean present) {
+    }
+
+    @Override
+    public void recordRemoval(Cache<?, ?> cache, Object key) {
+    }
+
+    @Override
+    public void recordClear(Cache<?, ?> cache) {
+    }
+
     private <K, V> List<Cache.Entry<K, V>> list(Cache<K, V> cache) {
         List<Cache.Entry<K, V>> list = new ArrayList<>();
         list.addAll(cache.getEntries());
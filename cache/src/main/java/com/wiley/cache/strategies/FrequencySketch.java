@@ -0,0 +1,103 @@
+package com.wiley.cache.strategies;
+
+/**
+ * Count-min sketch with 4-bit counters estimating how often a key was accessed.
+ * Each key maps to four counters packed into one long per row; the estimate is the
+ * smallest of them. After {@code 10 * capacity} increments all counters are halved,
+ * so the history ages and the sketch follows changes of the popularity of keys.
+ * The sketch of a cache without an entry limit grows with the number of its entries, see {@link #ensureCapacity}.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int MAXIMUM_CAPACITY = 1 << 20;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    FrequencySketch(int capacity) {
+        table = new long[0];
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Grows the table for {@code capacity} keys, up to a million. The counts are lost when it grows.
+     */
+    void ensureCapacity(int capacity) {
+        capacity = Math.min(Math.max(capacity, 1), MAXIMUM_CAPACITY);
+        if (capacity <= sampleSize / 10) {
+            return;
+        }
+        int length = 16;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        if (length > table.length) {
+            table = new long[length];
+            tableMask = length - 1;
+            size = 0;
+        }
+        sampleSize = 10 * capacity;
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
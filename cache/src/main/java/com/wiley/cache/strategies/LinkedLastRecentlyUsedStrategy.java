@@ -0,0 +1,30 @@
+package com.wiley.cache.strategies;
+
+import com.wiley.cache.AccessOrdered;
+import com.wiley.cache.Cache;
+
+/**
+ * Last recently used strategy which takes entries straight from the access ordered list
+ * of an {@link AccessOrdered} cache instead of sorting all cache entries on every call.
+ * Caches without access order fall back to sorting.
+ */
+public class LinkedLastRecentlyUsedStrategy extends LastRecentlyUsedStrategy {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Cache.Entry<K, V> pop(Cache<K, V> cache) {
+        if (cache instanceof AccessOrdered) {
+            return ((AccessOrdered<K, V>) cache).getYoungestEntry();
+        }
+        return super.pop(cache);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Cache.Entry<K, V> poll(Cache<K, V> cache) {
+        if (cache instanceof AccessOrdered) {
+            return ((AccessOrdered<K, V>) cache).getEldestEntry();
+        }
+        return super.poll(cache);
+    }
+}
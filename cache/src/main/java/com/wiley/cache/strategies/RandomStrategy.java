@@ -3,6 +3,7 @@ package com.wiley.cache.strategies;
 import com.wiley.cache.Cache;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.Random;
 
 public class RandomStrategy extends AbstractStrategy {
@@ -17,4 +18,22 @@ public class RandomStrategy extends AbstractStrategy {
             }
         };
     }
+
+    @Override
+    public <K, V> Cache.Entry<K, V> pop(Cache<K, V> cache) {
+        return any(cache);
+    }
+
+    @Override
+    public <K, V> Cache.Entry<K, V> poll(Cache<K, V> cache) {
+        return any(cache);
+    }
+
+    private <K, V> Cache.Entry<K, V> any(Cache<K, V> cache) {
+        List<Cache.Entry<K, V>> list = cache.getEntries();
+        if (list.isEmpty()) {
+            return null;
+        }
+        return list.get(random.nextInt(list.size()));
+    }
 }
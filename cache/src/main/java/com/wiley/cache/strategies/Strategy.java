@@ -0,0 +1,23 @@
+package com.wiley.cache.strategies;
+
+import com.wiley.cache.Cache;
+
+import java.util.Comparator;
+
+public interface Strategy {
+
+    <K, V> Cache.Entry<K, V> pop(Cache<K, V> cache);
+    <K, V> Cache.Entry<K, V> poll(Cache<K, V> cache);
+
+    <K, V> Comparator<Cache.Entry<K, V>> getComparator(Cache<K, V> cache);
+
+    /**
+     * Called by the cache on every lookup and store of the key,
+     * {@code present} tells whether the key is in the cache after the operation.
+     */
+    void recordAccess(Cache<?, ?> cache, Object key, boolean present);
+
+    void recordRemoval(Cache<?, ?> cache, Object key);
+
+    void recordClear(Cache<?, ?> cache);
+}
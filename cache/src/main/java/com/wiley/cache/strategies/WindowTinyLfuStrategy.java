@@ -0,0 +1,356 @@
+package com.wiley.cache.strategies;
+
+import com.wiley.cache.Cache;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Frequency aware strategy (W-TinyLFU). New keys enter a small admission window ordered by recency;
+ * when the window overflows its eldest key competes with the eldest key of the probation segment
+ * of the main region and the one accessed less often according to a {@link FrequencySketch} is evicted.
+ * Keys hit again in probation are promoted to the protected segment, which takes most of the main region.
+ * The segments are sized by the entry limit of the cache; a cache bounded only by weight is sized by the number
+ * of keys the strategy tracks, so the segments and the sketch grow as the cache fills.
+ * <p>
+ * Bookkeeping is kept per cache and fed by {@link #recordAccess}, so the strategy has to be passed
+ * to the cache it ranks. Keys unknown to the strategy are ranked below all tracked keys.
+ * Accesses are buffered and applied in batches by evictions and removals, which run under the write lock
+ * of the cache, so reads don't serialize on the strategy.
+ */
+public class WindowTinyLfuStrategy extends AbstractStrategy {
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final Map<Cache<?, ?>, Policy> policies = new WeakHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // policy of the cache looked up last, so readers of a single cache don't take the lock to find it
+    private volatile Binding last;
+
+    @Override
+    public <K, V> Comparator<Cache.Entry<K, V>> getComparator(Cache<K, V> cache) {
+        final Policy policy = policy(cache);
+        try {
+            lock.lock();
+            policy.drain();
+        } finally {
+            lock.unlock();
+        }
+        return new Comparator<Cache.Entry<K, V>>() {
+            @Override
+            public int compare(Cache.Entry<K, V> o1, Cache.Entry<K, V> o2) {
+                try {
+                    lock.lock();
+                    int res = policy.rank(o2.getKey()) - policy.rank(o1.getKey());
+                    if (res != 0) return res;
+                    res = policy.sketch.frequency(o2.getKey()) - policy.sketch.frequency(o1.getKey());
+                    if (res != 0) return res;
+                } finally {
+                    lock.unlock();
+                }
+                return - o1.getLastAccessTime().compareTo(o2.getLastAccessTime());
+            }
+        };
+    }
+
+    @Override
+    public <K, V> Cache.Entry<K, V> poll(Cache<K, V> cache) {
+        Policy policy = policy(cache);
+        for (;;) {
+            Object key;
+            try {
+                lock.lock();
+                policy.drain();
+                key = policy.victim();
+            } finally {
+                lock.unlock();
+            }
+            if (key == null) {
+                return super.poll(cache);
+            }
+            // the cache is not called while holding the lock, because it calls back under its own locks
+            Cache.Entry<K, V> entry = cache.getEntry(key);
+            if (entry != null) {
+                return entry;
+            }
+            try {
+                lock.lock();
+                policy.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Buffers the access, it is applied by the next eviction or removal. Readers take the lock only
+     * when their stripe of the buffer is full and nobody else holds it, otherwise the access is dropped.
+     */
+    @Override
+    public void recordAccess(Cache<?, ?> cache, Object key, boolean present) {
+        Policy policy = policy(cache);
+        Object record = present ? key : new Miss(key);
+        if (!policy.buffer.offer(record) && lock.tryLock()) {
+            try {
+                policy.drain();
+                policy.record(record);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void recordRemoval(Cache<?, ?> cache, Object key) {
+        Policy policy = policy(cache);
+        try {
+            lock.lock();
+            policy.drain();
+            policy.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void recordClear(Cache<?, ?> cache) {
+        Policy policy = policy(cache);
+        try {
+            lock.lock();
+            policy.drain();
+            policy.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Policy policy(Cache<?, ?> cache) {
+        Binding binding = last;
+        if (binding != null && binding.get() == cache) {
+            return binding.policy;
+        }
+        try {
+            lock.lock();
+            Policy policy = policies.get(cache);
+            if (policy == null) {
+                policy = new Policy(cache.getLimit());
+                policies.put(cache, policy);
+            }
+            last = new Binding(cache, policy);
+            return policy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Binding extends WeakReference<Cache<?, ?>> {
+        private final Policy policy;
+
+        private Binding(Cache<?, ?> cache, Policy policy) {
+            super(cache);
+            this.policy = policy;
+        }
+    }
+
+    /**
+     * Lookup of a key which is not in the cache, it only counts towards the frequency of the key.
+     */
+    private static class Miss {
+        private final Object key;
+
+        private Miss(Object key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Lossy buffer of the accesses, striped by thread so readers of different stripes don't write
+     * to the same cache lines. Records offered to a full stripe are rejected.
+     */
+    private static class AccessBuffer {
+
+        private static final int STRIPE_SIZE = 64;
+        // counters of a stripe are a cache line apart
+        private static final int PADDING = 8;
+
+        private final int stripeMask;
+        private final AtomicReferenceArray<Object> records;
+        private final AtomicLongArray writes;
+        private final AtomicLongArray reads;
+
+        private AccessBuffer() {
+            int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+            stripeMask = stripes - 1;
+            records = new AtomicReferenceArray<>(stripes * STRIPE_SIZE);
+            writes = new AtomicLongArray(stripes * PADDING);
+            reads = new AtomicLongArray(stripes * PADDING);
+        }
+
+        private boolean offer(Object record) {
+            int stripe = (int) Thread.currentThread().getId() & stripeMask;
+            int counter = stripe * PADDING;
+            long tail = writes.get(counter);
+            if (tail - reads.get(counter) >= STRIPE_SIZE) {
+                return false;
+            }
+            // a record losing the race for the slot is dropped
+            if (writes.compareAndSet(counter, tail, tail + 1)) {
+                records.lazySet(stripe * STRIPE_SIZE + (int) (tail & (STRIPE_SIZE - 1)), record);
+            }
+            return true;
+        }
+
+        /**
+         * Passes the buffered records to the policy, called under the lock of the strategy.
+         */
+        private void drainTo(Policy policy) {
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                int counter = stripe * PADDING;
+                long head = reads.get(counter);
+                long tail = writes.get(counter);
+                for (; head < tail; head++) {
+                    int slot = stripe * STRIPE_SIZE + (int) (head & (STRIPE_SIZE - 1));
+                    Object record = records.get(slot);
+                    if (record == null) {
+                        // the slot is claimed but not written yet, the rest is taken by the next drain
+                        break;
+                    }
+                    records.lazySet(slot, null);
+                    policy.record(record);
+                }
+                reads.lazySet(counter, head);
+            }
+        }
+    }
+
+    private static class Policy {
+
+        private static final int PROTECTED = 3;
+        private static final int WINDOW = 2;
+        private static final int PROBATION = 1;
+        private static final int UNKNOWN = 0;
+
+        private final FrequencySketch sketch;
+        private final AccessBuffer buffer = new AccessBuffer();
+        // Integer.MAX_VALUE when the cache has no entry limit
+        private final int limit;
+
+        private final LinkedHashMap<Object, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<Object, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<Object, Boolean> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+        private Policy(int limit) {
+            this.limit = limit;
+            sketch = new FrequencySketch(capacity());
+        }
+
+        /**
+         * Entries the cache holds when it is full, the number of tracked keys when it has no entry limit.
+         */
+        private int capacity() {
+            if (limit != Integer.MAX_VALUE) {
+                return Math.max(1, limit);
+            }
+            return Math.max(1, window.size() + probation.size() + protectedSegment.size());
+        }
+
+        private int windowCapacity() {
+            return Math.max(1, capacity() * WINDOW_PERCENT / 100);
+        }
+
+        private int protectedCapacity() {
+            int capacity = capacity();
+            return (int) ((long) (capacity - Math.max(1, capacity * WINDOW_PERCENT / 100)) * PROTECTED_PERCENT / 100);
+        }
+
+        private void drain() {
+            buffer.drainTo(this);
+        }
+
+        private void record(Object record) {
+            if (record instanceof Miss) {
+                sketch.increment(((Miss) record).key);
+            } else {
+                sketch.increment(record);
+                access(record);
+            }
+        }
+
+        private void access(Object key) {
+            if (window.get(key) != null || protectedSegment.get(key) != null) {
+                return;
+            }
+            if (probation.remove(key) != null) {
+                protectedSegment.put(key, Boolean.TRUE);
+                int protectedCapacity = protectedCapacity();
+                while (protectedSegment.size() > protectedCapacity) {
+                    probation.put(eldest(protectedSegment), Boolean.TRUE);
+                }
+                return;
+            }
+            window.put(key, Boolean.TRUE);
+            if (limit == Integer.MAX_VALUE) {
+                sketch.ensureCapacity(capacity());
+            }
+            int windowCapacity = windowCapacity();
+            while (window.size() > windowCapacity) {
+                probation.put(eldest(window), Boolean.TRUE);
+            }
+        }
+
+        /**
+         * Chooses the key to evict when a new key is about to enter the full window.
+         * The eldest window key is admitted to the main region only if it is used more often than the main victim.
+         */
+        private Object victim() {
+            Object candidate = window.size() >= windowCapacity() ? first(window) : null;
+            Object resident = probation.isEmpty() ? first(protectedSegment) : first(probation);
+            if (resident == null) {
+                return candidate != null ? candidate : first(window);
+            }
+            if (candidate == null) {
+                return resident;
+            }
+            if (sketch.frequency(candidate) > sketch.frequency(resident)) {
+                window.remove(candidate);
+                probation.put(candidate, Boolean.TRUE);
+                return resident;
+            }
+            return candidate;
+        }
+
+        private int rank(Object key) {
+            if (protectedSegment.containsKey(key)) return PROTECTED;
+            if (window.containsKey(key)) return WINDOW;
+            if (probation.containsKey(key)) return PROBATION;
+            return UNKNOWN;
+        }
+
+        private void remove(Object key) {
+            if (window.remove(key) == null && probation.remove(key) == null) {
+                protectedSegment.remove(key);
+            }
+        }
+
+        private void clear() {
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+        }
+
+        private static Object first(LinkedHashMap<Object, Boolean> segment) {
+            return segment.isEmpty() ? null : segment.keySet().iterator().next();
+        }
+
+        private static Object eldest(LinkedHashMap<Object, Boolean> segment) {
+            Iterator<Object> iterator = segment.keySet().iterator();
+            Object key = iterator.next();
+            iterator.remove();
+            return key;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.wiley.cache;
 import org.junit.Test;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -78,6 +79,30 @@ public abstract class AbstractCacheTest {
         assertTrue(cache.size() == map.size());
     }
 
+    @Test
+    public void testGetAll() throws Exception {
+        cache.put(1, "one");
+        cache.put("two", 2);
+        cache.put(3L, true);
+
+        Map<Serializable, Serializable> values = cache.getAll(Arrays.<Serializable>asList(1, "two", "missing", 1));
+        assertTrue(values.size() == 2);
+        assertTrue(values.get(1).equals("one"));
+        assertTrue(values.get("two").equals(2));
+        assertTrue(cache.getAll(Arrays.<Serializable>asList()).isEmpty());
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, i);
+        }
+        cache.removeAll(Arrays.asList(0, 2, 4, 42));
+        assertTrue(cache.size() == 2);
+        assertFalse(cache.containsKey(2));
+        assertTrue(cache.containsKey(3));
+    }
+
     @Test
     public void testClear() throws Exception {
         Map<Serializable, Serializable> map = new HashMap<>();
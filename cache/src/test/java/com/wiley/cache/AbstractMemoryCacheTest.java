@@ -0,0 +1,69 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.strategies.LinkedLastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.RandomStrategy;
+import com.wiley.cache.strategies.Strategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the eviction shared by the memory caches.
+ */
+public abstract class AbstractMemoryCacheTest extends AbstractCacheTest {
+
+    /**
+     * Creates the cache under test evicting with the strategy and notifying the listener, which may be {@code null}.
+     */
+    protected abstract Cache<Object, Object> createCache(Properties properties, Strategy strategy,
+                                                         EvictionListener<Object, Object> listener);
+
+    @Test
+    public void testEviction() {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.LIMIT, String.valueOf(10));
+        final List<Object> evicted = new ArrayList<>();
+        Cache<Object, Object> cache = createCache(props, new LinkedLastRecentlyUsedStrategy(),
+                new EvictionListener<Object, Object>() {
+                    @Override
+                    public void onEviction(Cache.Entry<Object, Object> entry) {
+                        evicted.add(entry.getKey());
+                    }
+                });
+
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i);
+        }
+        cache.get(0);
+        cache.put(0, 100);
+        assertTrue(evicted.isEmpty());
+
+        for (int i = 10; i < 15; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() == 10);
+        assertTrue(evicted.size() == 5);
+        assertTrue(((Integer) evicted.get(0)) == 1);
+        assertTrue(cache.containsKey(0));
+        assertTrue(!cache.containsKey(5));
+    }
+
+    @Test
+    public void testRandomEviction() {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.LIMIT, String.valueOf(50));
+        Cache<Object, Object> cache = createCache(props, new RandomStrategy(), null);
+
+        for (int i = 0; i < 500; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() == 50);
+        assertTrue(cache.containsKey(499));
+    }
+}
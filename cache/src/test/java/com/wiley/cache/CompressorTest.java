@@ -0,0 +1,59 @@
+package com.wiley.cache;
+
+import com.wiley.cache.compression.Compressor;
+import com.wiley.cache.compression.Compressors;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressorTest {
+
+    private static final Compressor[] COMPRESSORS = {Compressors.LZ, Compressors.DEFLATE};
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"item ").append(random.nextInt(50)).append("\"},");
+        }
+        byte[] text = json.toString().getBytes(Charset.forName("UTF-8"));
+        byte[] noise = new byte[5000];
+        random.nextBytes(noise);
+        byte[] run = new byte[70000];
+        Arrays.fill(run, (byte) 'a');
+        byte[][] inputs = {new byte[0], {1}, "abcabcabcabc".getBytes(Charset.forName("UTF-8")), text, noise, run};
+
+        for (Compressor compressor : COMPRESSORS) {
+            for (byte[] input : inputs) {
+                byte[] compressed = compressor.compress(input);
+                assertTrue(Arrays.equals(input, compressor.decompress(compressed, input.length)));
+            }
+            assertTrue(compressor.compress(text).length * 3 < text.length);
+            assertTrue(compressor.compress(run).length * 100 < run.length);
+            assertTrue(Compressors.forId(compressor.getId()) == compressor);
+        }
+    }
+
+    @Test
+    public void testDamagedBlock() {
+        byte[] input = new byte[1000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) (i % 17);
+        }
+        for (Compressor compressor : COMPRESSORS) {
+            byte[] compressed = compressor.compress(input);
+            try {
+                compressor.decompress(Arrays.copyOf(compressed, compressed.length / 2), input.length);
+                fail("Truncated block should not be decompressed");
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.ConcurrentMemoryCache;
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.strategies.LinkedLastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.Strategy;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrentMemoryCacheTest extends AbstractMemoryCacheTest {
+
+    @Before
+    public void before() {
+        cache = new ConcurrentMemoryCache<>();
+    }
+
+    @Override
+    protected Cache<Object, Object> createCache(Properties properties, Strategy strategy,
+                                                EvictionListener<Object, Object> listener) {
+        ConcurrentMemoryCache<Object, Object> cache = new ConcurrentMemoryCache<>(properties, strategy);
+        cache.setEvictionListener(listener);
+        return cache;
+    }
+
+    @Test
+    public void testLimit() {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.LIMIT, String.valueOf(50));
+        ConcurrentMemoryCache<Object, Object> cache = new ConcurrentMemoryCache<>(props);
+
+        try {
+            for (int i = 0; i < 51; i++) {
+                cache.put(i, i);
+            }
+            fail("Cache size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(cache.size() == 50);
+            assertTrue(cache.getEntries().size() == 50);
+        }
+    }
+
+    @Test
+    public void testAccessOrder() {
+        ConcurrentMemoryCache<Object, Object> cache = new ConcurrentMemoryCache<>();
+        Strategy strategy = new LinkedLastRecentlyUsedStrategy();
+
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, i);
+        }
+
+        cache.get(0);
+        cache.get(13);
+
+        assertTrue(((Integer) strategy.poll(cache).getKey()) == 1);
+        assertTrue(((Integer) strategy.pop(cache).getKey()) == 13);
+    }
+
+    @Test
+    public void testConcurrentLimit() throws InterruptedException {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.LIMIT, String.valueOf(1000));
+        final ConcurrentMemoryCache<Object, Object> cache = new ConcurrentMemoryCache<>(props);
+        final AtomicInteger rejected = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+
+        for (int t = 0; t < 4; t++) {
+            final int offset = t * 500;
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < offset + 500; i++) {
+                        try {
+                            cache.put(i, i);
+                            cache.get(i);
+                        } catch (CacheException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        assertTrue(cache.size() == 1000);
+        assertTrue(rejected.get() == 1000);
+        assertTrue(cache.keySet().size() == 1000);
+    }
+}
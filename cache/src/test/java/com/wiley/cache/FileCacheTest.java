@@ -0,0 +1,452 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.FileCache;
+import com.wiley.cache.serializers.CompactSerializer;
+import com.wiley.cache.strategies.LastRecentlyUsedStrategy;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileCacheTest extends AbstractCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void before() {
+        cache = new FileCache<>();
+    }
+
+    @Test
+    public void testLimit() {
+        Random random = new Random();
+        Properties fileProps = new Properties();
+        fileProps.setProperty(FileCache.FILES_LIMIT, String.valueOf(10));
+        FileCache<Serializable, Serializable> fileCache = new FileCache<>(fileProps);
+
+        try {
+            for (int i = 0; i < 11; i++) {
+                fileCache.put(i, random.nextInt(1000));
+            }
+            fail("Cache size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(fileCache.size() == 10);
+        }
+    }
+
+    @Test
+    public void testWeight() {
+        FileCache<Serializable, Serializable> cache = new FileCache<>();
+
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, i);
+        }
+
+        cache.get(13);
+        cache.get(15);
+        cache.get(16);
+        cache.get(21);
+
+        cache.remove(15);
+        cache.remove(48);
+
+        TreeSet<Cache.Entry<Serializable, Serializable>> entries = new TreeSet<>(new LastRecentlyUsedStrategy().getComparator(cache));
+
+        for (Cache.Entry<Serializable, Serializable> entry : cache.getEntries()) {
+            entries.add(entry);
+        }
+        
+        assertTrue(((Integer) entries.pollFirst().getKey()) == 21);
+        assertTrue(((Integer) entries.pollFirst().getKey()) == 16);
+        assertTrue(((Integer) entries.pollFirst().getKey()) == 13);
+        assertTrue(((Integer) entries.pollFirst().getKey()) == 49);
+    }
+
+    @Test
+    public void testAccessTime() {
+        FileCache<Serializable, Serializable> cache = new FileCache<>();
+        cache.put("key", "value");
+        long putTime = cache.getEntry("key").getLastAccessTime();
+
+        assertTrue(cache.get("key").equals("value"));
+        Cache.Entry<Serializable, Serializable> entry = cache.getEntry("key");
+        assertTrue(entry.getLastAccessTime() > putTime);
+        assertTrue(entry.getKey().equals("key"));
+        assertTrue(entry.getValue().equals("value"));
+    }
+
+    @Test
+    public void testSerializer() {
+        FileCache<SerializerTest.Point, String> cache = new FileCache<>();
+        cache.setKeySerializer(new CompactSerializer().register(16, SerializerTest.Point.class, new SerializerTest.PointSerializer()));
+
+        cache.put(new SerializerTest.Point(1, 2), "a");
+        cache.put(new SerializerTest.Point(2, 1), "b");
+
+        assertTrue(cache.get(new SerializerTest.Point(1, 2)).equals("a"));
+        assertTrue(cache.getEntry(new SerializerTest.Point(2, 1)).getKey().equals(new SerializerTest.Point(2, 1)));
+        assertTrue(cache.filesSize() < 60);
+    }
+
+    @Test
+    public void testCounters() {
+        FileCache<Serializable, Serializable> cache = new FileCache<>();
+        cache.put(1, "one");
+        int filesSize = cache.filesSize();
+        cache.put(1, "uno");
+        assertTrue(cache.size() == 1);
+        assertTrue(cache.filesSize() == filesSize);
+
+        assertTrue(cache.remove(2) == null);
+        assertTrue(cache.size() == 1);
+        cache.remove(1);
+        assertTrue(cache.size() == 0);
+        assertTrue(cache.filesSize() == 0);
+    }
+
+    @Test
+    public void testWriteBehind() {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.FILES_LIMIT, "100");
+        properties.setProperty(FileCache.WRITE_BEHIND, "true");
+        properties.setProperty(FileCache.WRITE_BEHIND_QUEUE, "8");
+        FileCache<Serializable, Serializable> behind = new FileCache<>(properties);
+        properties.setProperty(FileCache.WRITE_BEHIND, "false");
+        FileCache<Serializable, Serializable> through = new FileCache<>(properties);
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 40; i++) {
+                behind.put(i, "value " + round);
+                through.put(i, "value " + round);
+                assertTrue(behind.get(i).equals("value " + round));
+            }
+        }
+        for (int i = 0; i < 40; i += 2) {
+            behind.remove(i);
+            through.remove(i);
+            assertTrue(!behind.containsKey(i));
+        }
+
+        behind.flush();
+        assertTrue(behind.size() == 20);
+        assertTrue(behind.filesSize() == through.filesSize());
+        assertTrue(behind.getEntries().size() == 20);
+        assertTrue(behind.get(1).equals("value 2"));
+        behind.close();
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(AbstractCache.EXPIRE_AFTER_WRITE, "50");
+        properties.setProperty(FileCache.SWEEP_INTERVAL, "20");
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties);
+        cache.put(5, 5, 0, TimeUnit.MILLISECONDS);
+        int filesSize = cache.filesSize();
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, i);
+        }
+
+        Thread.sleep(300);
+        // reclaimed by the sweeper without reading the entries
+        assertTrue(cache.size() == 1);
+        assertTrue(cache.filesSize() == filesSize);
+        assertTrue(cache.get(5).equals(5));
+        cache.close();
+    }
+
+    @Test
+    public void testLazyExpiration() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(AbstractCache.EXPIRE_AFTER_ACCESS, "100");
+        properties.setProperty(FileCache.SWEEP_INTERVAL, "0");
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(40);
+            assertTrue(cache.get(1).equals("one"));
+        }
+        assertTrue(cache.size() == 2);
+        assertTrue(!cache.containsKey(2));
+        assertTrue(cache.getEntry(2) == null);
+        assertTrue(cache.get(2) == null);
+        assertTrue(cache.size() == 1);
+        assertTrue(cache.keySet().size() == 1);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.CACHE_PATH, folder.getRoot().getPath());
+        properties.setProperty(FileCache.SWEEP_INTERVAL, "0");
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties, "snapshot");
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value " + i);
+        }
+        cache.put("expiring", "value", 100, TimeUnit.MILLISECONDS);
+        int filesSize = cache.filesSize();
+        cache.close();
+
+        FileCache<Serializable, Serializable> reopened = new FileCache<>(properties, "snapshot");
+        assertTrue(reopened.size() == 11);
+        assertTrue(reopened.filesSize() == filesSize);
+        assertTrue(reopened.get(3).equals("value 3"));
+        Thread.sleep(300);
+        // swept by the restored timer, a scan does not schedule the entries
+        reopened.cleanUp();
+        assertTrue(reopened.size() == 10);
+        reopened.close();
+    }
+
+    @Test
+    public void testStaleSnapshot() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.CACHE_PATH, folder.getRoot().getPath());
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties, "stale");
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value " + i);
+        }
+        int filesSize = cache.filesSize();
+        cache.close();
+
+        File directory = new File(folder.getRoot(), "cache" + File.separator + "stale");
+        File[] classDirectories = directory.listFiles();
+        File removed = null;
+        for (File classDirectory : classDirectories) {
+            if (classDirectory.isDirectory()) {
+                removed = classDirectory.listFiles()[0];
+            }
+        }
+        long length = removed.length();
+        // the modification time of the directory has to change
+        Thread.sleep(1100);
+        assertTrue(removed.delete());
+
+        FileCache<Serializable, Serializable> reopened = new FileCache<>(properties, "stale");
+        assertTrue(reopened.size() == 9);
+        assertTrue(reopened.filesSize() == filesSize - length);
+        reopened.close();
+    }
+
+    @Test
+    public void testDamagedSnapshot() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.CACHE_PATH, folder.getRoot().getPath());
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties, "damaged");
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value " + i);
+        }
+        cache.close();
+
+        File snapshot = new File(folder.getRoot(), "cache" + File.separator + "damaged" + File.separator + "index.snapshot");
+        assertTrue(snapshot.isFile());
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.seek(12);
+            file.writeInt(1000);
+        }
+        FileCache<Serializable, Serializable> reopened = new FileCache<>(properties, "damaged");
+        assertTrue(reopened.size() == 10);
+        reopened.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        reopened = new FileCache<>(properties, "damaged");
+        assertTrue(reopened.size() == 10);
+        assertTrue(reopened.get(7).equals("value 7"));
+        reopened.close();
+    }
+
+    @Test
+    public void testFilter() {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.CACHE_PATH, folder.getRoot().getPath());
+        properties.setProperty(FileCache.FILES_LIMIT, "1000");
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties, "filter");
+        for (int i = 0; i < 500; i++) {
+            cache.put(i, i);
+        }
+        for (int i = 0; i < 500; i += 2) {
+            cache.remove(i);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertTrue(cache.containsKey(i) == (i % 2 == 1));
+            assertTrue(cache.get(i + 500) == null);
+        }
+        assertTrue(cache.size() == 250);
+
+        // lookups of an unknown key class do not create its directory
+        assertTrue(!cache.containsKey("absent"));
+        assertTrue(cache.get("absent") == null);
+        assertTrue(!new File(folder.getRoot(), "cache" + File.separator + "filter" + File.separator
+                + String.class.getName()).exists());
+
+        // without the filter entries written by another instance are visible
+        properties.setProperty(FileCache.FILTER, "false");
+        FileCache<Serializable, Serializable> shared = new FileCache<>(properties, "filter");
+        cache.put(1000, "shared");
+        assertTrue(shared.containsKey(1000));
+        assertTrue(shared.get(1000).equals("shared"));
+        cache.close();
+    }
+
+    @Test
+    public void testCompression() {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.CACHE_PATH, folder.getRoot().getPath());
+        properties.setProperty(FileCache.COMPRESSION, "lz");
+        properties.setProperty(FileCache.COMPRESSION_THRESHOLD, "64");
+        properties.setProperty(AbstractCache.STATS_ENABLED, "true");
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            json.append("{\"id\":").append(i).append(",\"tags\":[\"cache\",\"file\"]},");
+        }
+        byte[] noise = new byte[2000];
+        new Random(42).nextBytes(noise);
+
+        properties.setProperty(FileCache.COMPRESSION, "none");
+        FileCache<Serializable, Serializable> plain = new FileCache<>(properties, "compression");
+        plain.put("plain", json.toString());
+        int plainSize = plain.filesSize();
+        plain.close();
+
+        properties.setProperty(FileCache.COMPRESSION, "lz");
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties, "compression");
+        cache.put("json", json.toString());
+        cache.put("short", "short value");
+        cache.put("noise", noise);
+        assertTrue(cache.filesSize() - plainSize < plainSize / 3 + 2000 + 200);
+        assertTrue(cache.getStats().getCompressionRatio() > 1);
+        assertTrue(cache.getStats().getUncompressedBytes() > cache.getStats().getCompressedBytes());
+        cache.close();
+
+        // records written with any compression are readable with another one
+        properties.setProperty(FileCache.COMPRESSION, "deflate");
+        FileCache<Serializable, Serializable> reopened = new FileCache<>(properties, "compression");
+        for (String key : new String[] {"plain", "json"}) {
+            assertTrue(reopened.get(key).equals(json.toString()));
+            assertTrue(reopened.getEntry(key).getValue().equals(json.toString()));
+        }
+        assertTrue(reopened.get("short").equals("short value"));
+        assertTrue(Arrays.equals((byte[]) reopened.get("noise"), noise));
+        assertTrue(reopened.entrySet().size() == 4);
+        reopened.close();
+    }
+
+    @Test
+    public void testLazyIteration() {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.CACHE_PATH, folder.getRoot().getPath());
+        properties.setProperty(FileCache.COMPRESSION, "lz");
+        properties.setProperty(FileCache.EXPIRE_AFTER_WRITE, "3600000");
+        properties.setProperty(FileCache.SIZE_LIMIT, String.valueOf(10 << 20));
+        properties.setProperty(FileCache.FILES_LIMIT, "1000");
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties);
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longValue.append("value ").append(i);
+        }
+        Map<Serializable, Serializable> expected = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            expected.put(i, i % 2 == 0 ? longValue.toString() : "value " + i);
+            expected.put("key " + i, i);
+        }
+        cache.putAll(expected);
+
+        assertTrue(new HashSet<>(cache.keySet()).equals(expected.keySet()));
+        assertTrue(cache.values().size() == 100 && cache.values().contains(longValue.toString()));
+        assertTrue(cache.values().size() == 100 && cache.values().contains(longValue.toString()));
+        assertTrue(cache.getEntries().size() == 100);
+
+        // writers are not blocked while the iteration goes on
+        Iterator<Serializable> keys = cache.keySet().iterator();
+        Serializable first = keys.next();
+        cache.put("added", "added");
+        keys.remove();
+        assertTrue(!cache.containsKey(first));
+        int count = 1;
+        while (keys.hasNext()) {
+            keys.next();
+            count++;
+        }
+        assertTrue(count == 100 || count == 101);
+        assertTrue(cache.keySet().size() == 100);
+        assertTrue(cache.keySet().contains("added"));
+        cache.clear();
+        assertTrue(!cache.keySet().iterator().hasNext());
+    }
+
+    @Test
+    public void testLazyIterationWriteBehind() {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.CACHE_PATH, folder.getRoot().getPath());
+        properties.setProperty(FileCache.WRITE_BEHIND, "true");
+        FileCache<Serializable, Serializable> cache = new FileCache<>(properties);
+        for (int i = 0; i < 40; i++) {
+            cache.put(i, "value " + i);
+        }
+        for (int i = 0; i < 40; i += 2) {
+            cache.remove(i);
+        }
+        // queued and written entries are returned once, removed ones are not
+        Map<Serializable, Serializable> entries = new HashMap<>();
+        for (Map.Entry<Serializable, Serializable> entry : cache.entrySet()) {
+            assertTrue(entries.put(entry.getKey(), entry.getValue()) == null);
+        }
+        assertTrue(entries.size() == 20);
+        assertTrue(entries.get(1).equals("value 1") && !entries.containsKey(0));
+        cache.close();
+    }
+
+    @Test
+    public void testWriteBehindSizeLimit() {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.SIZE_LIMIT, "4096");
+        properties.setProperty(FileCache.WRITE_BEHIND, "true");
+        properties.setProperty(FileCache.WRITE_BEHIND_QUEUE, "1000");
+        FileCache<Serializable, Serializable> behind = new FileCache<>(properties);
+        properties.setProperty(FileCache.WRITE_BEHIND, "false");
+        FileCache<Serializable, Serializable> through = new FileCache<>(properties);
+
+        // queued entries count against the limit before they are written
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        int stored = 0;
+        try {
+            for (int i = 0; i < 100; i++) {
+                behind.put(i, value);
+                through.put(i, value);
+                stored++;
+            }
+            fail();
+        } catch (CacheException ignored) {
+        }
+        assertTrue(stored <= 5);
+        behind.remove(0);
+        through.remove(0);
+        behind.put(0, "small");
+        through.put(0, "small");
+        behind.flush();
+        assertTrue(behind.filesSize() == through.filesSize());
+        behind.close();
+        through.close();
+    }
+}
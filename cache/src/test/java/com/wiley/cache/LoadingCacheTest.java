@@ -0,0 +1,170 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.FileCache;
+import com.wiley.cache.impl.LoadingCache;
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.impl.MultiLevelCache;
+import com.wiley.cache.strategies.LastRecentlyUsedStrategy;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LoadingCacheTest extends AbstractCacheTest {
+
+    @Before
+    public void before() {
+        cache = new LoadingCache<>(new MemoryCache<Serializable, Serializable>());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final LoadingCache<Integer, String> cache = new LoadingCache<>(new MemoryCache<Integer, String>(),
+                new CacheLoader<Integer, String>() {
+                    @Override
+                    public String load(Integer key) throws Exception {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        release.await();
+                        return "value " + key;
+                    }
+                });
+
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    results.add(cache.getOrLoad(7));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        started.await();
+        Thread.sleep(50);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(8, results.size());
+        for (String result : results) {
+            assertEquals("value 7", result);
+        }
+        assertEquals(0, cache.loadingCount());
+        assertEquals("value 7", cache.get(7));
+    }
+
+    @Test
+    public void testBulkLoad() {
+        final List<Collection<? extends Integer>> calls = new ArrayList<>();
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(new MemoryCache<Integer, Integer>(),
+                new CacheLoader<Integer, Integer>() {
+                    @Override
+                    public Integer load(Integer key) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public Map<Integer, Integer> loadAll(Collection<? extends Integer> keys) {
+                        calls.add(new ArrayList<>(keys));
+                        Map<Integer, Integer> values = new HashMap<>();
+                        for (Integer key : keys) {
+                            if (key % 2 == 0) {
+                                values.put(key, key * 10);
+                            }
+                        }
+                        return values;
+                    }
+                });
+        cache.put(1, 100);
+
+        Map<Integer, Integer> values = cache.getOrLoadAll(Arrays.asList(1, 2, 3, 4, 2));
+
+        assertEquals(1, calls.size());
+        assertEquals(Arrays.asList(2, 3, 4), calls.get(0));
+        assertEquals(3, values.size());
+        assertEquals(100, (int) values.get(1));
+        assertEquals(20, (int) values.get(2));
+        assertEquals(40, (int) values.get(4));
+        assertTrue(cache.containsKey(4));
+        assertTrue(!cache.containsKey(3));
+    }
+
+    @Test
+    public void testFailedLoad() {
+        final AtomicInteger attempts = new AtomicInteger();
+        CacheLoader<Integer, String> loader = new CacheLoader<Integer, String>() {
+            @Override
+            public String load(Integer key) throws Exception {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new IllegalStateException("source is down");
+                }
+                return "value";
+            }
+        };
+        Properties properties = new Properties();
+        properties.setProperty(AbstractCache.STATS_ENABLED, "true");
+        LoadingCache<Integer, String> cache = new LoadingCache<>(new MemoryCache<Integer, String>(properties), loader);
+        try {
+            cache.getOrLoad(1);
+            fail("load failure should be rethrown");
+        } catch (CacheException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(!cache.containsKey(1));
+        assertEquals("value", cache.getOrLoad(1));
+        assertEquals(2, attempts.get());
+        assertEquals(1, cache.getStats().getLoadFailureCount());
+        assertEquals(1, cache.getStats().getLoadSuccessCount());
+        assertTrue(cache.getStats().getTotalLoadTime() > 0);
+    }
+
+    @Test
+    public void testStatsDisabled() {
+        LoadingCache<Integer, String> cache = new LoadingCache<>(new MemoryCache<Integer, String>(),
+                new CacheLoader<Integer, String>() {
+                    @Override
+                    public String load(Integer key) {
+                        return "value";
+                    }
+                });
+        assertEquals("value", cache.getOrLoad(1));
+        assertTrue(!cache.isStatsEnabled());
+        assertEquals(0, cache.getStats().getLoadSuccessCount());
+        assertEquals(0, cache.getStats().getTotalLoadTime());
+    }
+
+    @Test
+    public void testMultiLevel() {
+        Cache<Serializable, Serializable> memoryCache = new MemoryCache<>();
+        Cache<Serializable, Serializable> fileCache = new FileCache<>();
+        LoadingCache<Serializable, Serializable> cache = new LoadingCache<>(
+                new MultiLevelCache<>(Arrays.asList(memoryCache, fileCache), new LastRecentlyUsedStrategy()),
+                new CacheLoader<Serializable, Serializable>() {
+                    @Override
+                    public Serializable load(Serializable key) {
+                        return "value " + key;
+                    }
+                });
+
+        for (int i = 0; i < 70; i++) {
+            assertEquals("value " + i, cache.getOrLoad(i));
+        }
+        assertEquals(70, cache.size());
+        assertEquals("value 0", cache.get(0));
+    }
+}
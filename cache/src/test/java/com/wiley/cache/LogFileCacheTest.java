@@ -0,0 +1,176 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.FileCache;
+import com.wiley.cache.impl.LogFileCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.*;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LogFileCacheTest extends AbstractCacheTest {
+
+    @Before
+    public void before() {
+        cache = new LogFileCache<>();
+    }
+
+    @Test
+    public void testLimit() {
+        Properties props = new Properties();
+        props.setProperty(FileCache.FILES_LIMIT, String.valueOf(10));
+        LogFileCache<Serializable, Serializable> logCache = new LogFileCache<>(props);
+
+        try {
+            for (int i = 0; i < 11; i++) {
+                logCache.put(i, i);
+            }
+            fail("Cache size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(logCache.size() == 10);
+        }
+    }
+
+    @Test
+    public void testReopen() {
+        String cacheId = UUID.randomUUID().toString();
+        LogFileCache<Serializable, Serializable> logCache = new LogFileCache<>(cacheId);
+        for (int i = 0; i < 20; i++) {
+            logCache.put(i, "value" + i);
+        }
+        logCache.put(3, "changed");
+        logCache.remove(5);
+        logCache.close();
+
+        LogFileCache<Serializable, Serializable> reopened = new LogFileCache<>(cacheId);
+        assertTrue(reopened.size() == 19);
+        assertTrue(reopened.get(3).equals("changed"));
+        assertTrue(reopened.get(4).equals("value4"));
+        assertTrue(reopened.get(5) == null);
+        reopened.close();
+    }
+
+    @Test
+    public void testBatch() {
+        Properties props = new Properties();
+        props.setProperty(FileCache.FILES_LIMIT, String.valueOf(100));
+        props.setProperty(LogFileCache.SEGMENT_SIZE, String.valueOf(512));
+        String cacheId = UUID.randomUUID().toString();
+        LogFileCache<Serializable, Serializable> logCache = new LogFileCache<>(props, cacheId);
+        Map<Serializable, Serializable> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 60; i++) {
+            batch.put(i, "value" + i);
+        }
+        logCache.put(1, "old");
+        logCache.putAll(batch);
+        logCache.removeAll(Arrays.asList(2, 3, 1000));
+
+        Map<Serializable, Serializable> values = logCache.getAll(Arrays.<Serializable>asList(1, 2, 59));
+        assertTrue(values.size() == 2);
+        assertTrue(values.get(1).equals("value1"));
+        assertTrue(values.get(59).equals("value59"));
+
+        Map<Serializable, Serializable> tooMany = new HashMap<>();
+        for (int i = 100; i < 150; i++) {
+            tooMany.put(i, i);
+        }
+        try {
+            logCache.putAll(tooMany);
+            fail("Cache size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(logCache.size() == 58);
+        }
+        logCache.close();
+
+        // the batch spans several segments and is replayed like single writes
+        LogFileCache<Serializable, Serializable> reopened = new LogFileCache<>(props, cacheId);
+        assertTrue(reopened.size() == 58);
+        assertTrue(reopened.get(30).equals("value30"));
+        assertTrue(reopened.get(3) == null);
+        reopened.close();
+    }
+
+    @Test
+    public void testCompaction() {
+        Properties props = new Properties();
+        props.setProperty(FileCache.SIZE_LIMIT, String.valueOf(20000));
+        props.setProperty(LogFileCache.SEGMENT_SIZE, String.valueOf(2048));
+        String cacheId = UUID.randomUUID().toString();
+        LogFileCache<Serializable, Serializable> logCache = new LogFileCache<>(props, cacheId);
+
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 20; i++) {
+                logCache.put(i, round * 100 + i);
+            }
+            logCache.remove(round % 20);
+        }
+        logCache.compact();
+
+        assertTrue(logCache.filesSize() <= 20000);
+        assertTrue(logCache.size() == 19);
+        assertTrue(((Integer) logCache.get(0)) == 4900);
+        assertTrue(logCache.get(9) == null);
+        logCache.close();
+
+        LogFileCache<Serializable, Serializable> reopened = new LogFileCache<>(props, cacheId);
+        assertTrue(reopened.size() == 19);
+        assertTrue(reopened.get(9) == null);
+        assertTrue(((Integer) reopened.get(19)) == 4919);
+        reopened.close();
+    }
+
+    @Test
+    public void testRemovalsCompact() {
+        Properties props = new Properties();
+        props.setProperty(FileCache.FILES_LIMIT, String.valueOf(1000));
+        props.setProperty(FileCache.SIZE_LIMIT, String.valueOf(4096));
+        props.setProperty(LogFileCache.SEGMENT_SIZE, String.valueOf(512));
+        // no background compaction, only the one making room
+        props.setProperty(LogFileCache.COMPACTION_RATIO, "2");
+        LogFileCache<Serializable, Serializable> logCache = new LogFileCache<>(props);
+        int keys = 0;
+        try {
+            for (; keys < 1000; keys++) {
+                logCache.put(keys, "value " + keys);
+            }
+            fail("Files size should be exceeded");
+        } catch (CacheException ignored) {
+        }
+
+        // tombstones take the room of the records removed before them
+        for (int i = 0; i < keys; i++) {
+            logCache.remove(i);
+            assertTrue(logCache.filesSize() <= 4096 + 64);
+        }
+        assertTrue(logCache.size() == 0);
+        logCache.close();
+    }
+
+    @Test
+    public void testMappedReads() {
+        Properties props = new Properties();
+        props.setProperty(LogFileCache.MMAP, "true");
+        props.setProperty(LogFileCache.MMAP_WINDOW, String.valueOf(64));
+        props.setProperty(LogFileCache.SEGMENT_SIZE, String.valueOf(1024));
+        LogFileCache<Serializable, Serializable> logCache = new LogFileCache<>(props);
+
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            value.append(i);
+            logCache.put(i, value.toString());
+            assertTrue(logCache.get(i).equals(value.toString()));
+        }
+        for (int i = 0; i < 40; i += 2) {
+            logCache.put(i, "even" + i);
+        }
+        logCache.compact();
+
+        assertTrue(logCache.get(10).equals("even10"));
+        assertTrue(((String) logCache.get(39)).endsWith("3839"));
+        assertTrue(logCache.getEntries().size() == 40);
+        logCache.close();
+    }
+}
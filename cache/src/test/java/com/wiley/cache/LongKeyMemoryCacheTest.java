@@ -0,0 +1,139 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.FileCache;
+import com.wiley.cache.impl.LongKeyMemoryCache;
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.impl.MultiLevelCache;
+import com.wiley.cache.strategies.LastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.LinkedLastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.WindowTinyLfuStrategy;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LongKeyMemoryCacheTest {
+
+    private static Properties limit(int limit) {
+        Properties properties = new Properties();
+        properties.setProperty(MemoryCache.LIMIT, String.valueOf(limit));
+        return properties;
+    }
+
+    @Test
+    public void testPrimitiveAndBoxedAccess() {
+        LongKeyMemoryCache<String> cache = new LongKeyMemoryCache<>();
+        assertTrue(cache.put(1, "one") == null);
+        assertTrue(cache.put(1L, "uno").equals("one"));
+        assertTrue(cache.get(1).equals("uno"));
+        assertTrue(cache.get(Long.valueOf(1)).equals("uno"));
+        assertTrue(cache.get((Object) 1) == null);
+        assertTrue(cache.containsKey(1L) && !cache.containsKey(2L));
+        assertTrue(cache.getEntry(1L).getValue().equals("uno"));
+        assertTrue(cache.remove(1L).equals("uno"));
+        assertTrue(cache.isEmpty());
+        try {
+            cache.put(2, null);
+            fail("Null values should be rejected");
+        } catch (NullPointerException ignored) {
+        }
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        LongKeyMemoryCache<Long> cache = new LongKeyMemoryCache<>(limit(100000));
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            // a narrow range, so probe sequences collide and removals shift entries back
+            long key = random.nextInt(5000) * 1024L;
+            if (random.nextInt(3) == 0) {
+                assertTrue(equal(expected.remove(key), cache.remove(key)));
+            } else {
+                assertTrue(equal(expected.put(key, (long) i), cache.put(key, Long.valueOf(i))));
+            }
+        }
+        assertTrue(cache.size() == expected.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertTrue(cache.get((long) entry.getKey()).equals(entry.getValue()));
+        }
+        assertTrue(cache.keySet().equals(expected.keySet()));
+        assertTrue(cache.getEntries().size() == expected.size());
+        cache.clear();
+        assertTrue(cache.isEmpty() && cache.get(0) == null);
+    }
+
+    @Test
+    public void testAccessOrder() {
+        LongKeyMemoryCache<Integer> cache = new LongKeyMemoryCache<>(limit(3), new LinkedLastRecentlyUsedStrategy());
+        for (int i = 0; i < 3; i++) {
+            cache.put(i, i);
+        }
+        cache.get(0);
+        assertTrue(cache.getEldestEntry().getKey() == 1);
+        assertTrue(cache.getYoungestEntry().getKey() == 0);
+        cache.put(3, 3);
+        assertTrue(!cache.containsKey(1L));
+        cache.remove(2L);
+        cache.put(4, 4);
+        cache.put(5, 5);
+        assertTrue(cache.size() == 3);
+        assertTrue(cache.keySet().equals(new HashSet<>(Arrays.asList(3L, 4L, 5L))));
+        assertTrue(cache.getEldestEntry().getKey() == 3);
+    }
+
+    @Test
+    public void testStrategies() {
+        LongKeyMemoryCache<Integer> lru = new LongKeyMemoryCache<>(limit(10), new LastRecentlyUsedStrategy());
+        LongKeyMemoryCache<Integer> tinyLfu = new LongKeyMemoryCache<>(limit(100), new WindowTinyLfuStrategy());
+        for (int i = 0; i < 1000; i++) {
+            lru.put(i, i);
+            tinyLfu.put(i % 10, i);
+            tinyLfu.put(i, i);
+        }
+        assertTrue(lru.size() == 10);
+        assertTrue(lru.containsKey(999L));
+        assertTrue(tinyLfu.size() == 100);
+        for (long key = 0; key < 10; key++) {
+            // hot keys are kept
+            assertTrue(tinyLfu.containsKey(key));
+        }
+
+        LongKeyMemoryCache<Integer> bounded = new LongKeyMemoryCache<>(limit(2));
+        bounded.put(1, 1);
+        bounded.put(2, 2);
+        try {
+            bounded.put(3, 3);
+            fail("Cache size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(bounded.size() == 2);
+        }
+    }
+
+    @Test
+    public void testTier() {
+        LongKeyMemoryCache<String> memoryCache = new LongKeyMemoryCache<>(limit(10));
+        Cache<Long, String> fileCache = new FileCache<>();
+        MultiLevelCache<Long, String> cache = new MultiLevelCache<>(
+                Arrays.<Cache<Long, String>>asList(memoryCache, fileCache), new LastRecentlyUsedStrategy());
+        for (long i = 0; i < 30; i++) {
+            cache.put(i, "value " + i);
+        }
+        assertTrue(cache.size() == 30);
+        assertTrue(memoryCache.size() == 10);
+        assertTrue(cache.get(0L).equals("value 0"));
+        assertTrue(memoryCache.containsKey(0L));
+        cache.clear();
+    }
+
+    private static boolean equal(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+}
@@ -0,0 +1,377 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.FileCache;
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.impl.MultiLevelCache;
+import com.wiley.cache.stats.CacheStats;
+import com.wiley.cache.strategies.LastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.LinkedLastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.Strategy;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MemoryCacheTest extends AbstractMemoryCacheTest {
+
+    @Before
+    public void before() {
+        cache = new MemoryCache<>();
+    }
+
+    @Override
+    protected Cache<Object, Object> createCache(Properties properties, Strategy strategy,
+                                                EvictionListener<Object, Object> listener) {
+        MemoryCache<Object, Object> cache = new MemoryCache<>(properties, strategy);
+        cache.setEvictionListener(listener);
+        return cache;
+    }
+
+    @Test
+    public void testLimit() {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.LIMIT, String.valueOf(50));
+        MemoryCache<Object, Object> cache = new MemoryCache<>(props);
+
+        try {
+            for (int i = 0; i < 51; i++) {
+                cache.put(i, i);
+            }
+            fail("Cache size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(cache.size() == 50);
+        }
+    }
+
+    @Test
+    public void testWeight() {
+        MemoryCache<Object, Object> cache = new MemoryCache<>();
+
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, i);
+        }
+
+        cache.get(13);
+        cache.get(15);
+        cache.get(16);
+        cache.get(21);
+
+        cache.remove(15);
+        cache.remove(48);
+
+        TreeSet<Cache.Entry<Object, Object>> entries = new TreeSet<>(new LastRecentlyUsedStrategy().getComparator(cache));
+
+        for (Cache.Entry<Object, Object> entry : cache.getEntries()) {
+            entries.add(entry);
+        }
+
+        assertTrue(((Integer) entries.pollFirst().getKey()) == 21);
+        assertTrue(((Integer) entries.pollFirst().getKey()) == 16);
+        assertTrue(((Integer) entries.pollFirst().getKey()) == 13);
+        assertTrue(((Integer) entries.pollFirst().getKey()) == 49);
+    }
+
+    @Test
+    public void testAccessOrder() {
+        MemoryCache<Object, Object> cache = new MemoryCache<>();
+        Strategy strategy = new LinkedLastRecentlyUsedStrategy();
+
+        assertTrue(strategy.poll(cache) == null);
+
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, i);
+        }
+
+        cache.get(0);
+        cache.get(13);
+        cache.remove(1);
+        cache.put(2, 2);
+
+        assertTrue(((Integer) strategy.poll(cache).getKey()) == 3);
+        assertTrue(((Integer) strategy.pop(cache).getKey()) == 2);
+
+        cache.get(3);
+        assertTrue(((Integer) strategy.poll(cache).getKey()) == 4);
+        assertTrue(((Integer) strategy.pop(cache).getKey()) == 3);
+
+        cache.clear();
+        assertTrue(strategy.pop(cache) == null);
+    }
+
+    @Test
+    public void testStats() {
+        Properties properties = new Properties();
+        properties.setProperty(MemoryCache.LIMIT, "10");
+        properties.setProperty(AbstractCache.STATS_ENABLED, "true");
+        MemoryCache<Integer, Integer> cache = new MemoryCache<>(properties, new LastRecentlyUsedStrategy());
+        for (int i = 0; i < 15; i++) {
+            cache.put(i, i);
+        }
+        for (int i = 0; i < 15; i++) {
+            cache.get(i);
+        }
+
+        CacheStats stats = cache.getStats();
+        assertEquals(15, stats.getPutCount());
+        assertEquals(5, stats.getEvictionCount());
+        assertEquals(10, stats.getHitCount());
+        assertEquals(5, stats.getMissCount());
+        assertEquals(2.0 / 3, stats.getHitRate(), 1e-9);
+        assertEquals(0, stats.getTierCount());
+        assertEquals(15, stats.getGetLatency().getCount());
+        assertEquals(15, stats.getPutLatency().getCount());
+        long median = stats.getGetLatency().getPercentile(50, TimeUnit.NANOSECONDS);
+        assertTrue(median > 0);
+        assertTrue(median <= stats.getGetLatency().getPercentile(100, TimeUnit.NANOSECONDS));
+
+        // a snapshot is not affected by later operations
+        cache.get(14);
+        assertEquals(10, stats.getHitCount());
+        assertEquals(11, cache.getStats().getHitCount());
+    }
+
+    @Test
+    public void testConcurrentStats() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty(AbstractCache.STATS_ENABLED, "true");
+        final MemoryCache<Integer, Integer> cache = new MemoryCache<>(properties);
+        cache.put(0, 0);
+        // the latencies recorded by each thread end up in the same histogram
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        cache.get(i % 2);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        CacheStats stats = cache.getStats();
+        assertEquals(8000, stats.getGetLatency().getCount());
+        assertEquals(4000, stats.getHitCount());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(AbstractCache.EXPIRE_AFTER_WRITE, "50");
+        MemoryCache<Object, Object> cache = new MemoryCache<>(props);
+        cache.put(1, 1);
+        cache.put(2, 2, 0, TimeUnit.MILLISECONDS);
+        cache.put(3, 3, 1, TimeUnit.HOURS);
+        assertTrue(cache.containsKey(1));
+
+        Thread.sleep(100);
+        assertTrue(cache.get(1) == null);
+        assertTrue(!cache.containsKey(1));
+        assertTrue(cache.getEntries().size() == 2);
+
+        cache.cleanUp();
+        assertTrue(cache.size() == 2);
+        assertTrue(cache.get(2).equals(2));
+        assertTrue(cache.get(3).equals(3));
+    }
+
+    @Test
+    public void testExpireAfterAccess() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(AbstractCache.EXPIRE_AFTER_ACCESS, "150");
+        MemoryCache<Object, Object> cache = new MemoryCache<>(props);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(50);
+            assertTrue(cache.get(1).equals(1));
+        }
+        cache.cleanUp();
+        assertTrue(cache.size() == 1);
+        assertTrue(!cache.containsKey(2));
+
+        Thread.sleep(200);
+        cache.put(3, 3);
+        assertTrue(cache.size() == 1);
+    }
+
+    @Test
+    public void testWeightLimit() {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.WEIGHT_LIMIT, "1000");
+        MemoryCache<Integer, String> cache = new MemoryCache<>(props, new LinkedLastRecentlyUsedStrategy());
+        cache.setWeigher(new Weigher<Integer, String>() {
+            @Override
+            public int weigh(Integer key, String value) {
+                return value.length();
+            }
+        });
+        final List<Object> evicted = new ArrayList<>();
+        cache.setEvictionListener(new EvictionListener<Integer, String>() {
+            @Override
+            public void onEviction(Cache.Entry<Integer, String> entry) {
+                evicted.add(entry.getKey());
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "x");
+        }
+        assertTrue(cache.size() == 100);
+        assertTrue(cache.getWeight() == 100);
+
+        cache.get(0);
+        cache.put(100, new String(new char[950]));
+        assertTrue(cache.getWeight() <= 1000);
+        assertTrue(cache.containsKey(0));
+        assertTrue(cache.containsKey(100));
+        assertTrue(evicted.size() == 50);
+        assertTrue(evicted.get(0).equals(1));
+
+        cache.remove(100);
+        assertTrue(cache.getWeight() == 50);
+        try {
+            cache.put(101, new String(new char[1001]));
+            fail("entry heavier than the limit should be rejected");
+        } catch (CacheException ignored) {
+        }
+    }
+
+    @Test
+    public void testEstimator() {
+        assertTrue(Weighers.sizeOf(1) == 16);
+        assertTrue(Weighers.sizeOf(1L) == 24);
+        assertTrue(Weighers.sizeOf("abcd") == 48);
+        assertTrue(Weighers.sizeOf(new byte[100]) == 120);
+        assertTrue(Weighers.sizeOf(new long[]{1, 2}) == 32);
+        assertTrue(Weighers.ESTIMATOR.weigh(1, new byte[1 << 20]) > 1 << 20);
+        // other objects are weighed by their own fields
+        Node node = new Node();
+        assertEquals(24, Weighers.sizeOf(node));
+        node.next = new byte[1 << 20];
+        assertEquals(24, Weighers.sizeOf(node));
+
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.WEIGHT_LIMIT, String.valueOf(10 << 20));
+        MemoryCache<Integer, byte[]> cache = new MemoryCache<>(props, new LinkedLastRecentlyUsedStrategy());
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, new byte[i % 2 == 0 ? 100 : 1 << 20]);
+        }
+        assertTrue(cache.getWeight() <= 10 << 20);
+        assertTrue(cache.size() > 10 && cache.size() < 100);
+    }
+
+    @Test
+    public void testWeakValues() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.VALUES, "weak");
+        props.setProperty(MemoryCache.HARD_LIMIT, "2");
+        MemoryCache<Integer, String> cache = new MemoryCache<>(props);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value " + i);
+        }
+        cache.get(3);
+        // only the most recently used values are held strongly, the collector may clear the others
+        for (int i = 0; i < 10; i++) {
+            if (i != 3 && i != 9) {
+                collect(cache, i);
+            }
+        }
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(3).equals("value 3"));
+        assertTrue(cache.get(9).equals("value 9"));
+        assertTrue(cache.get(0) == null && !cache.containsKey(0));
+        assertEquals(2, cache.getEntries().size());
+        assertEquals(2, cache.values().size());
+    }
+
+    @Test
+    public void testSoftTier() {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.VALUES, "soft");
+        props.setProperty(MemoryCache.HARD_LIMIT, "5");
+        props.setProperty(MemoryCache.LIMIT, "10");
+        MemoryCache<Integer, String> memoryCache = new MemoryCache<>(props);
+        MultiLevelCache<Integer, String> cache = new MultiLevelCache<>(Arrays.<Cache<Integer, String>>asList(
+                memoryCache, new FileCache<Integer, String>()), new LastRecentlyUsedStrategy());
+        for (int i = 0; i < 30; i++) {
+            cache.put(i, "value " + i);
+        }
+        assertEquals(30, cache.size());
+        assertEquals(10, memoryCache.size());
+        assertTrue(cache.get(0).equals("value 0"));
+        assertTrue(memoryCache.containsKey(0));
+        assertTrue(cache.put(0, "zero").equals("value 0"));
+        assertTrue(cache.get(0).equals("zero"));
+        cache.clear();
+        assertTrue(memoryCache.isEmpty());
+    }
+
+    @Test
+    public void testCollectedTier() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.VALUES, "soft");
+        props.setProperty(MemoryCache.HARD_LIMIT, "5");
+        props.setProperty(MemoryCache.LIMIT, "10");
+        MemoryCache<Integer, String> memoryCache = new MemoryCache<>(props);
+        FileCache<Integer, String> fileCache = new FileCache<>();
+        MultiLevelCache<Integer, String> cache = new MultiLevelCache<>(Arrays.<Cache<Integer, String>>asList(
+                memoryCache, fileCache), new LastRecentlyUsedStrategy());
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value " + i);
+        }
+        // the next tier keeps copies of the entries whose values may be collected
+        assertEquals(10, fileCache.size());
+        assertEquals(10, cache.size());
+
+        collect(memoryCache, 0);
+        collect(memoryCache, 1);
+        assertTrue(cache.get(0).equals("value 0"));
+        assertTrue(memoryCache.containsKey(0));
+
+        // a collected value drained by the tier leaves the entry to its copy
+        memoryCache.cleanUp();
+        assertEquals(10, cache.size());
+        assertEquals(9, cache.size(0));
+        assertTrue(cache.get(1).equals("value 1"));
+        assertEquals(10, cache.size(0));
+
+        cache.remove(2);
+        assertFalse(fileCache.containsKey(2));
+        assertEquals(9, cache.size());
+        cache.clear();
+        assertTrue(fileCache.isEmpty());
+    }
+
+    /**
+     * Clears the reference to the value of the entry and enqueues it, as the garbage collector would.
+     */
+    private static void collect(MemoryCache<?, ?> cache, Object key) throws Exception {
+        Cache.Entry<?, ?> entry = cache.getEntry(key);
+        Field field = entry.getClass().getDeclaredField("reference");
+        field.setAccessible(true);
+        Reference<?> reference = (Reference<?>) field.get(entry);
+        reference.clear();
+        reference.enqueue();
+    }
+
+    static class Node {
+        long id;
+        Object next;
+    }
+}
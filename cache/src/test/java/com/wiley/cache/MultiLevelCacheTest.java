@@ -0,0 +1,386 @@
+package com.wiley.cache;
+
+
+import com.wiley.cache.impl.FileCache;
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.impl.MultiLevelCache;
+import com.wiley.cache.stats.CacheStats;
+import com.wiley.cache.strategies.LastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.WindowTinyLfuStrategy;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MultiLevelCacheTest extends AbstractCacheTest {
+
+    @Before
+    public void before() {
+        Cache<Serializable, Serializable> memoryCache = new MemoryCache<>();
+        Cache<Serializable, Serializable> fileCache = new FileCache<>();
+
+        cache = new MultiLevelCache<>(Arrays.asList(memoryCache, fileCache), new LastRecentlyUsedStrategy());
+    }
+
+    @Test
+    public void multiTest() {
+        MultiLevelCache<Serializable, Serializable> multiCache = (MultiLevelCache<Serializable, Serializable>) cache;
+        
+        for (int i = 0; i < 100; i++) {
+            multiCache.put(i, i);
+        }
+
+        multiCache.remove(30);
+        multiCache.remove(60);
+        multiCache.get(20);
+        multiCache.get(80);
+
+        multiCache.reorganize();
+        
+        assertTrue(multiCache.size() == 98);
+    }
+
+    @Test
+    public void sizeExceededTest() {
+        try {
+            for (int i = 0; i < 210; i++) {
+                cache.put(i, i);
+            }
+            fail("exception should be thrown");
+        } catch (CacheException ignored) {
+        }
+    }
+
+    @Test
+    public void frequencyReorganizeTest() {
+        Cache<Serializable, Serializable> memoryCache = new MemoryCache<>();
+        Cache<Serializable, Serializable> fileCache = new FileCache<>();
+        MultiLevelCache<Serializable, Serializable> multiCache =
+                new MultiLevelCache<>(Arrays.asList(memoryCache, fileCache), new WindowTinyLfuStrategy());
+
+        for (int i = 0; i < 100; i++) {
+            multiCache.put(i, i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 90; i < 100; i++) {
+                multiCache.get(i);
+            }
+        }
+
+        multiCache.reorganize();
+
+        assertTrue(multiCache.size() == 100);
+        for (int i = 90; i < 100; i++) {
+            assertTrue(memoryCache.containsKey(i));
+        }
+    }
+
+    @Test
+    public void incrementalMovementTest() {
+        Cache<Serializable, Serializable> memoryCache = new MemoryCache<>();
+        Cache<Serializable, Serializable> fileCache = new FileCache<>();
+        MultiLevelCache<Serializable, Serializable> multiCache =
+                new MultiLevelCache<>(Arrays.asList(memoryCache, fileCache), new LastRecentlyUsedStrategy());
+
+        for (int i = 0; i < 60; i++) {
+            multiCache.put(i, i);
+        }
+        // the eldest entries are demoted on overflow
+        assertEquals(50, memoryCache.size());
+        assertEquals(10, fileCache.size());
+        assertTrue(fileCache.containsKey(0));
+        assertFalse(memoryCache.containsKey(0));
+
+        // a hit in the lower tier is promoted and the current victim is demoted in its place
+        assertEquals(0, multiCache.get(0));
+        assertTrue(memoryCache.containsKey(0));
+        assertFalse(fileCache.containsKey(0));
+        assertTrue(fileCache.containsKey(10));
+        assertEquals(50, memoryCache.size());
+        assertEquals(10, fileCache.size());
+
+        // overwriting a demoted key moves it up as well
+        assertEquals(11, multiCache.put(11, 111));
+        assertEquals(111, memoryCache.get(11));
+        assertFalse(fileCache.containsKey(11));
+        assertEquals(60, multiCache.size());
+    }
+
+    @Test
+    public void tierStatsTest() {
+        Properties properties = new Properties();
+        properties.setProperty(AbstractCache.STATS_ENABLED, "true");
+        MultiLevelCache<Serializable, Serializable> multiCache = new MultiLevelCache<>(properties,
+                Arrays.<Cache<Serializable, Serializable>>asList(new MemoryCache<Serializable, Serializable>(), new FileCache<Serializable, Serializable>()),
+                new LastRecentlyUsedStrategy());
+        for (int i = 0; i < 60; i++) {
+            multiCache.put(i, i);
+        }
+        multiCache.get(0);
+        multiCache.get(0);
+        multiCache.get(59);
+        multiCache.get(1000);
+
+        CacheStats stats = multiCache.getStats();
+        assertEquals(60, stats.getPutCount());
+        assertEquals(3, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(2, stats.getTierCount());
+        // the first read of the demoted entry is served by the file tier and promotes it
+        assertEquals(2, stats.getTierHitCount(0));
+        assertEquals(1, stats.getTierHitCount(1));
+        assertEquals(4, stats.getGetLatency().getCount());
+
+        // statistics are disabled by default
+        assertEquals(0, cache.getStats().getPutCount());
+        cache.put(1, 1);
+        assertEquals(0, cache.getStats().getPutCount());
+    }
+
+    @Test
+    public void bulkTest() {
+        Cache<Serializable, Serializable> memoryCache = new MemoryCache<>();
+        Cache<Serializable, Serializable> fileCache = new FileCache<>();
+        MultiLevelCache<Serializable, Serializable> multiCache =
+                new MultiLevelCache<>(Arrays.asList(memoryCache, fileCache), new LastRecentlyUsedStrategy());
+        Map<Serializable, Serializable> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 60; i++) {
+            batch.put(i, i);
+        }
+        multiCache.putAll(batch);
+        assertEquals(50, multiCache.size(0));
+        assertEquals(10, multiCache.size(1));
+
+        // demoted entries are promoted, the victims take their place in the file tier
+        Map<Serializable, Serializable> values = multiCache.getAll(Arrays.<Serializable>asList(0, 1, 59, 100));
+        assertEquals(3, values.size());
+        assertEquals(1, values.get(1));
+        assertTrue(memoryCache.containsKey(0));
+        assertTrue(memoryCache.containsKey(1));
+        assertEquals(50, multiCache.size(0));
+        assertEquals(10, multiCache.size(1));
+
+        // overwriting keys of both tiers moves them to the first one
+        Map<Serializable, Serializable> update = new LinkedHashMap<>();
+        update.put(2, "two");
+        update.put(59, "fifty nine");
+        multiCache.putAll(update);
+        assertEquals("two", memoryCache.get(2));
+        assertEquals(60, multiCache.size());
+
+        multiCache.removeAll(Arrays.asList(0, 2, 3, 100));
+        assertEquals(57, multiCache.size());
+        assertEquals(57, multiCache.size(0) + multiCache.size(1));
+        assertEquals(57, memoryCache.size() + fileCache.size());
+        assertFalse(multiCache.containsKey(2));
+    }
+
+    @Test
+    public void tierSizeTest() {
+        MultiLevelCache<Serializable, Serializable> multiCache = (MultiLevelCache<Serializable, Serializable>) cache;
+        for (int i = 0; i < 70; i++) {
+            multiCache.put(i, i);
+        }
+        multiCache.put(65, 65);
+        multiCache.put(5, 5);
+        multiCache.remove(6);
+        multiCache.remove(1000);
+
+        assertEquals(69, multiCache.size());
+        assertEquals(50, multiCache.size(0));
+        assertEquals(19, multiCache.size(1));
+        assertTrue(multiCache.containsKey(5));
+        assertFalse(multiCache.containsKey(6));
+
+        multiCache.clear();
+        assertTrue(multiCache.isEmpty());
+        assertEquals(0, multiCache.size(1));
+    }
+
+    @Test
+    public void reopenTest() {
+        Properties properties = new Properties();
+        properties.setProperty(FileCache.FILES_LIMIT, "100");
+        String cacheId = UUID.randomUUID().toString();
+        FileCache<Serializable, Serializable> fileCache = new FileCache<>(properties, cacheId);
+        for (int i = 0; i < 10; i++) {
+            fileCache.put(i, i);
+        }
+
+        Cache<Serializable, Serializable> memoryCache = new MemoryCache<>();
+        MultiLevelCache<Serializable, Serializable> multiCache =
+                new MultiLevelCache<>(Arrays.<Cache<Serializable, Serializable>>asList(memoryCache, fileCache), new LastRecentlyUsedStrategy());
+        assertEquals(10, multiCache.size());
+        assertTrue(multiCache.containsKey(3));
+        assertEquals(3, multiCache.get(3));
+        assertEquals(1, multiCache.size(0));
+    }
+
+    @Test
+    public void weightedTierTest() {
+        Properties properties = new Properties();
+        properties.setProperty(MemoryCache.WEIGHT_LIMIT, "100");
+        MemoryCache<Serializable, Serializable> memoryCache = new MemoryCache<>(properties);
+        final int[] weighed = new int[1];
+        memoryCache.setWeigher(new Weigher<Serializable, Serializable>() {
+            @Override
+            public int weigh(Serializable key, Serializable value) {
+                weighed[0]++;
+                return ((String) value).length();
+            }
+        });
+        Cache<Serializable, Serializable> fileCache = new FileCache<>();
+        MultiLevelCache<Serializable, Serializable> multiCache =
+                new MultiLevelCache<>(Arrays.<Cache<Serializable, Serializable>>asList(memoryCache, fileCache), new LastRecentlyUsedStrategy());
+
+        for (int i = 0; i < 10; i++) {
+            multiCache.put(i, "0123456789");
+        }
+        assertEquals(10, multiCache.size(0));
+
+        // a heavy entry pushes out as many light ones as needed, it is weighed only once
+        weighed[0] = 0;
+        multiCache.put(10, "01234567890123456789012345678901234567890123456789");
+        assertEquals(1, weighed[0]);
+        assertEquals(6, multiCache.size(0));
+        assertEquals(5, multiCache.size(1));
+        assertTrue(memoryCache.getWeight() <= 100);
+
+        // and one heavier than the whole tier goes to the next one
+        multiCache.put(11, new String(new char[101]));
+        assertTrue(fileCache.containsKey(11));
+        assertEquals(12, multiCache.size());
+
+        multiCache.reorganize();
+        assertTrue(memoryCache.getWeight() <= 100);
+        assertEquals(12, multiCache.size());
+        assertTrue(fileCache.containsKey(11));
+    }
+
+    @Test
+    public void demotionOrderTest() {
+        Properties memoryProps = new Properties();
+        memoryProps.setProperty(MemoryCache.LIMIT, "10");
+        Properties fileProps = new Properties();
+        fileProps.setProperty(FileCache.FILES_LIMIT, "10");
+        // victims of the middle tier come from the order kept by the multi-level cache, it is never listed
+        FileCache<Serializable, Serializable> middle = new FileCache<Serializable, Serializable>(fileProps, UUID.randomUUID().toString()) {
+            @Override
+            public List<Entry<Serializable, Serializable>> getEntries() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        FileCache<Serializable, Serializable> last = new FileCache<>(new Properties(), UUID.randomUUID().toString());
+        List<Cache<Serializable, Serializable>> tiers = Arrays.<Cache<Serializable, Serializable>>asList(
+                new MemoryCache<Serializable, Serializable>(memoryProps), middle, last);
+        MultiLevelCache<Serializable, Serializable> multiCache = new MultiLevelCache<>(tiers, new LastRecentlyUsedStrategy());
+
+        for (int i = 0; i < 30; i++) {
+            multiCache.put(i, i);
+        }
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i < 10 ? 2 : i < 20 ? 1 : 0, levelOf(tiers, i));
+        }
+
+        // a promoted entry is the youngest of the first tier, the eldest one goes down
+        assertEquals(5, multiCache.get(5));
+        assertEquals(1, levelOf(tiers, 20));
+        assertEquals(2, levelOf(tiers, 10));
+        multiCache.clear();
+    }
+
+    @Test
+    public void frequencyDemotionTest() {
+        Properties properties = new Properties();
+        properties.setProperty(MemoryCache.LIMIT, "10");
+        MemoryCache<Serializable, Serializable> memoryCache = new MemoryCache<>(properties);
+        MultiLevelCache<Serializable, Serializable> multiCache = new MultiLevelCache<>(
+                Arrays.<Cache<Serializable, Serializable>>asList(memoryCache, new FileCache<Serializable, Serializable>()),
+                new WindowTinyLfuStrategy());
+
+        for (int i = 0; i < 10; i++) {
+            multiCache.put(i, i);
+        }
+        for (int round = 0; round < 20; round++) {
+            multiCache.get(0);
+        }
+        for (int i = 1; i < 10; i++) {
+            multiCache.get(i);
+        }
+        // the first tier ranks its victims by the accesses recorded for it, the hot key stays
+        for (int i = 10; i < 30; i++) {
+            multiCache.put(i, i);
+        }
+        assertTrue(memoryCache.containsKey(0));
+        assertEquals(30, multiCache.size());
+        multiCache.clear();
+    }
+
+    @Test
+    public void expiringTierTest() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(MemoryCache.LIMIT, "50");
+        properties.setProperty(AbstractCache.EXPIRE_AFTER_WRITE, "50");
+        MemoryCache<Serializable, Serializable> memoryCache = new MemoryCache<>(properties);
+        FileCache<Serializable, Serializable> fileCache = new FileCache<>();
+        MultiLevelCache<Serializable, Serializable> multiCache = new MultiLevelCache<>(
+                Arrays.<Cache<Serializable, Serializable>>asList(memoryCache, fileCache), new LastRecentlyUsedStrategy());
+
+        for (int i = 0; i < 50; i++) {
+            multiCache.put(i, i);
+        }
+        Thread.sleep(100);
+        // entries expired in the first tier make room there, they are not counted any more
+        for (int i = 50; i < 60; i++) {
+            multiCache.put(i, i);
+        }
+        assertEquals(10, multiCache.size());
+        assertEquals(10, multiCache.size(0));
+        assertEquals(0, multiCache.size(1));
+        assertTrue(fileCache.isEmpty());
+        multiCache.clear();
+    }
+
+    @Test
+    public void sweptTierTest() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(AbstractCache.EXPIRE_AFTER_WRITE, "50");
+        properties.setProperty(FileCache.SWEEP_INTERVAL, "20");
+        Properties memoryProps = new Properties();
+        memoryProps.setProperty(MemoryCache.LIMIT, "5");
+        FileCache<Serializable, Serializable> fileCache = new FileCache<>(properties, UUID.randomUUID().toString());
+        MultiLevelCache<Serializable, Serializable> multiCache = new MultiLevelCache<>(
+                Arrays.<Cache<Serializable, Serializable>>asList(new MemoryCache<Serializable, Serializable>(memoryProps), fileCache),
+                new LastRecentlyUsedStrategy());
+
+        for (int i = 0; i < 15; i++) {
+            multiCache.put(i, i);
+        }
+        assertEquals(10, multiCache.size(1));
+        // the sweeper of the file tier expires the demoted entries without being asked
+        Thread.sleep(300);
+        assertEquals(5, multiCache.size());
+        assertEquals(0, multiCache.size(1));
+        multiCache.clear();
+    }
+
+    private static int levelOf(List<Cache<Serializable, Serializable>> tiers, int key) {
+        for (int level = 0; level < tiers.size(); level++) {
+            if (tiers.get(level).containsKey(key)) {
+                return level;
+            }
+        }
+        return -1;
+    }
+}
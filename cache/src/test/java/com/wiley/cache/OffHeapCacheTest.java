@@ -0,0 +1,184 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.FileCache;
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.impl.MultiLevelCache;
+import com.wiley.cache.impl.OffHeapCache;
+import com.wiley.cache.strategies.LastRecentlyUsedStrategy;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OffHeapCacheTest extends AbstractCacheTest {
+
+    @Before
+    public void before() {
+        cache = new OffHeapCache<>();
+    }
+
+    @Test
+    public void testLimit() {
+        Properties props = new Properties();
+        props.setProperty(OffHeapCache.LIMIT, String.valueOf(50));
+        OffHeapCache<Object, Object> cache = new OffHeapCache<>(props);
+
+        try {
+            for (int i = 0; i < 51; i++) {
+                cache.put(i, i);
+            }
+            fail("Cache size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(cache.size() == 50);
+        }
+    }
+
+    @Test
+    public void testSizeLimit() {
+        Properties props = new Properties();
+        props.setProperty(OffHeapCache.LIMIT, String.valueOf(1000));
+        props.setProperty(OffHeapCache.SIZE_LIMIT, String.valueOf(4096));
+        props.setProperty(OffHeapCache.SLAB_SIZE, String.valueOf(1024));
+        OffHeapCache<Object, Object> cache = new OffHeapCache<>(props);
+
+        try {
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i, i);
+            }
+            fail("Off-heap size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(cache.memorySize() == 4096);
+            assertTrue(cache.size() == 64);
+        }
+
+        for (int i = 0; i < 32; i++) {
+            cache.remove(i);
+        }
+        for (int i = 100; i < 132; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() == 64);
+        assertTrue(((Integer) cache.get(131)) == 131);
+        assertTrue(cache.get(0) == null);
+    }
+
+    @Test
+    public void testFailedReplace() {
+        Properties props = new Properties();
+        props.setProperty(OffHeapCache.SIZE_LIMIT, String.valueOf(65536));
+        props.setProperty(OffHeapCache.SLAB_SIZE, String.valueOf(65536));
+        OffHeapCache<Object, Object> cache = new OffHeapCache<>(props);
+        cache.put(1, "small");
+
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 20000) {
+            large.append("large value ");
+        }
+        try {
+            cache.put(1, large.toString());
+            fail("Off-heap size should be exceeded");
+        } catch (CacheException e) {
+            // the current value is kept
+            assertTrue(cache.get(1).equals("small"));
+            assertTrue(cache.size() == 1);
+        }
+
+        // a value of the same size class replaces the current one in its chunk
+        assertTrue(cache.put(1, "smaller").equals("small"));
+        assertTrue(cache.get(1).equals("smaller"));
+        assertTrue(cache.size() == 1 && cache.memorySize() == 65536);
+    }
+
+    @Test
+    public void testSlabReassignment() {
+        Properties props = new Properties();
+        props.setProperty(OffHeapCache.SIZE_LIMIT, String.valueOf(8192));
+        props.setProperty(OffHeapCache.SLAB_SIZE, String.valueOf(4096));
+        OffHeapCache<Object, Object> cache = new OffHeapCache<>(props);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "v");
+        }
+        assertTrue(cache.memorySize() == 8192);
+        for (int i = 0; i < 99; i++) {
+            cache.remove(i);
+        }
+
+        // the slab emptied by the removals takes the size class of the larger entry
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 500) {
+            large.append('x');
+        }
+        cache.put(1, large.toString());
+        assertTrue(cache.get(1).equals(large.toString()));
+        assertTrue(cache.get(99).equals("v"));
+        assertTrue(cache.memorySize() == 8192);
+
+        cache.remove(1);
+        cache.remove(99);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "v");
+        }
+        assertTrue(cache.size() == 100);
+    }
+
+    @Test
+    public void testReplaceInPlace() {
+        Properties props = new Properties();
+        props.setProperty(OffHeapCache.SIZE_LIMIT, String.valueOf(1024));
+        props.setProperty(OffHeapCache.SLAB_SIZE, String.valueOf(1024));
+        OffHeapCache<Object, Object> cache = new OffHeapCache<>(props);
+        char[] value = new char[900];
+        Arrays.fill(value, 'a');
+        cache.put(1, new String(value));
+        // the only chunk of the slab is taken by the current value
+        Arrays.fill(value, 'b');
+        assertTrue(cache.put(1, new String(value)).toString().startsWith("a"));
+        assertTrue(cache.get(1).toString().startsWith("b"));
+        assertTrue(cache.size() == 1);
+        try {
+            cache.put(2, "other");
+            fail("Off-heap size should be exceeded");
+        } catch (CacheException e) {
+            assertTrue(cache.size() == 1);
+        }
+    }
+
+    @Test
+    public void testCollisions() {
+        Properties props = new Properties();
+        props.setProperty(OffHeapCache.LIMIT, String.valueOf(500));
+        OffHeapCache<Object, Object> cache = new OffHeapCache<>(props);
+
+        for (int i = 0; i < 500; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 500; i += 3) {
+            cache.remove("key" + i);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertTrue(i % 3 == 0 ? cache.get("key" + i) == null : cache.get("key" + i).equals("value" + i));
+        }
+        assertTrue(cache.getEntries().size() == cache.size());
+    }
+
+    @Test
+    public void testMultiLevel() {
+        Cache<Serializable, Serializable> memoryCache = new MemoryCache<>();
+        Cache<Serializable, Serializable> offHeapCache = new OffHeapCache<>();
+        Cache<Serializable, Serializable> fileCache = new FileCache<>();
+        MultiLevelCache<Serializable, Serializable> multiCache = new MultiLevelCache<>(
+                Arrays.asList(memoryCache, offHeapCache, fileCache), new LastRecentlyUsedStrategy());
+
+        for (int i = 0; i < 200; i++) {
+            multiCache.put(i, "value" + i);
+        }
+        assertTrue(offHeapCache.size() == 100);
+        assertTrue(multiCache.get(120).equals("value120"));
+        assertTrue(multiCache.size() == 200);
+    }
+}
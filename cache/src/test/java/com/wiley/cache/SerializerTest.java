@@ -0,0 +1,90 @@
+package com.wiley.cache;
+
+import com.wiley.cache.serializers.CompactSerializer;
+import com.wiley.cache.serializers.Serializer;
+import com.wiley.cache.serializers.Serializers;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SerializerTest {
+
+    @Test
+    public void testBuiltInTypes() {
+        CompactSerializer serializer = new CompactSerializer();
+        Object[] objects = {"h\u00e9llo \u4e16\u754c", 42, 42L, true, (byte) 7, (short) 300, 'x', 1.5f, 2.5d, new Date(1000)};
+        for (Object object : objects) {
+            assertTrue(object.equals(Serializers.fromBytes(serializer, Serializers.toBytes(serializer, object))));
+        }
+        byte[] bytes = {1, 2, 3};
+        assertTrue(Arrays.equals(bytes, (byte[]) Serializers.fromBytes(serializer, Serializers.toBytes(serializer, bytes))));
+    }
+
+    @Test
+    public void testCompactSize() {
+        CompactSerializer serializer = new CompactSerializer();
+        assertTrue(Serializers.toBytes(serializer, 4).length == 5);
+        assertTrue(Serializers.toBytes(Serializers.JAVA, 4).length > 80);
+    }
+
+    @Test
+    public void testRegisteredType() {
+        CompactSerializer serializer = new CompactSerializer().register(16, Point.class, new PointSerializer());
+
+        Point point = (Point) Serializers.fromBytes(serializer, Serializers.toBytes(serializer, new Point(3, -4)));
+        assertTrue(point.x == 3 && point.y == -4);
+        assertTrue(Serializers.toBytes(serializer, point).length == 9);
+
+        try {
+            Serializers.fromBytes(new CompactSerializer(), Serializers.toBytes(serializer, point));
+            fail("unknown type id should not be read");
+        } catch (CacheException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test(expected = CacheException.class)
+    public void testNotSerializable() {
+        Serializers.toBytes(new CompactSerializer(), new Point(1, 2));
+    }
+
+    static class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Point && ((Point) o).x == x && ((Point) o).y == y;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+    }
+
+    static class PointSerializer implements Serializer<Point> {
+        @Override
+        public void write(Point object, DataOutput out) throws IOException {
+            out.writeInt(object.x);
+            out.writeInt(object.y);
+        }
+
+        @Override
+        public Point read(DataInput in) throws IOException {
+            return new Point(in.readInt(), in.readInt());
+        }
+    }
+}
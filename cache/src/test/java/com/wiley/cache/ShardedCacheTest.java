@@ -0,0 +1,131 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.FileCache;
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.impl.MultiLevelCache;
+import com.wiley.cache.impl.ShardedCache;
+import com.wiley.cache.strategies.LastRecentlyUsedStrategy;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardedCacheTest extends AbstractCacheTest {
+
+    private final String cacheId = UUID.randomUUID().toString();
+
+    private final ShardFactory<Serializable, Serializable> factory = new ShardFactory<Serializable, Serializable>() {
+        @Override
+        public Cache<Serializable, Serializable> create(int shard, Properties properties) {
+            return new MultiLevelCache<>(Arrays.<Cache<Serializable, Serializable>>asList(
+                    new MemoryCache<Serializable, Serializable>(properties),
+                    new FileCache<Serializable, Serializable>(properties, cacheId + "-" + shard)),
+                    new LastRecentlyUsedStrategy());
+        }
+    };
+
+    @Before
+    public void before() {
+        cache = new ShardedCache<>(factory);
+    }
+
+    @Test
+    public void testLimits() {
+        Properties properties = new Properties();
+        properties.setProperty(ShardedCache.SHARDS, "3");
+        properties.setProperty(MemoryCache.LIMIT, "100");
+        properties.setProperty(FileCache.FILES_LIMIT, "300");
+        final List<Properties> shardProperties = new ArrayList<>();
+        ShardedCache<Serializable, Serializable> sharded = new ShardedCache<>(properties,
+                new ShardFactory<Serializable, Serializable>() {
+                    @Override
+                    public Cache<Serializable, Serializable> create(int shard, Properties properties) {
+                        shardProperties.add(properties);
+                        return factory.create(shard, properties);
+                    }
+                });
+
+        assertTrue(sharded.getShards().size() == 3);
+        assertTrue(sharded.getLimit() == 3 * (34 + 100));
+        for (Properties shard : shardProperties) {
+            assertTrue(shard.getProperty(MemoryCache.LIMIT).equals("34"));
+            assertTrue(shard.getProperty(FileCache.FILES_LIMIT).equals("100"));
+            assertTrue(shard.getProperty(FileCache.SWEEP_INTERVAL) != null);
+        }
+    }
+
+    @Test
+    public void testDistribution() {
+        Properties properties = new Properties();
+        properties.setProperty(MemoryCache.LIMIT, "4000");
+        properties.setProperty(FileCache.FILES_LIMIT, "0");
+        ShardedCache<Serializable, Serializable> sharded = new ShardedCache<>(properties, factory);
+        for (int i = 0; i < 2000; i++) {
+            sharded.put(i, i);
+        }
+        int total = 0;
+        for (Cache<Serializable, Serializable> shard : sharded.getShards()) {
+            assertTrue(shard.size() > 400 && shard.size() < 600);
+            total += shard.size();
+        }
+        assertTrue(total == 2000);
+        assertTrue(sharded.size() == 2000);
+        assertTrue(sharded.get(1234).equals(1234));
+    }
+
+    @Test
+    public void testBulk() {
+        Properties properties = new Properties();
+        properties.setProperty(ShardedCache.SHARDS, "8");
+        properties.setProperty(MemoryCache.LIMIT, "200");
+        properties.setProperty(FileCache.FILES_LIMIT, "1000");
+        ShardedCache<Serializable, Serializable> sharded = new ShardedCache<>(properties, factory);
+
+        Map<Serializable, Serializable> map = new HashMap<>();
+        List<Serializable> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            map.put("key " + i, i);
+            keys.add("key " + i);
+        }
+        sharded.putAll(map);
+        assertTrue(sharded.size() == 500);
+        assertTrue(sharded.getAll(keys).equals(map));
+
+        sharded.removeAll(keys.subList(0, 250));
+        assertTrue(sharded.size() == 250);
+        assertTrue(sharded.getAll(keys).size() == 250);
+        assertTrue(!sharded.containsKey("key 0"));
+        assertTrue(sharded.containsKey("key 499"));
+
+        sharded.clear();
+        assertTrue(sharded.isEmpty());
+    }
+
+    @Test
+    public void testBulkFailure() {
+        Properties properties = new Properties();
+        properties.setProperty(MemoryCache.LIMIT, "4");
+        properties.setProperty(FileCache.FILES_LIMIT, "4");
+        ShardedCache<Serializable, Serializable> sharded = new ShardedCache<>(properties, factory);
+
+        Map<Serializable, Serializable> map = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        try {
+            sharded.putAll(map);
+            fail("Limit of the shards should be exceeded");
+        } catch (CacheException ignored) {
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.wiley.cache;
+
+import com.wiley.cache.impl.MemoryCache;
+import com.wiley.cache.strategies.LinkedLastRecentlyUsedStrategy;
+import com.wiley.cache.strategies.RandomStrategy;
+import com.wiley.cache.strategies.Strategy;
+import com.wiley.cache.strategies.WindowTinyLfuStrategy;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares hit rates of the strategies evicting from a full {@link MemoryCache} on synthetic traces.
+ */
+public class StrategyTest {
+
+    private static final int CAPACITY = 500;
+    private static final int KEYS = 20000;
+    private static final int OPERATIONS = 200000;
+
+    @Test
+    public void testZipfHitRate() {
+        double lru = hitRate(new LinkedLastRecentlyUsedStrategy(), zipf(0));
+        double random = hitRate(new RandomStrategy(), zipf(0));
+        double tinyLfu = hitRate(new WindowTinyLfuStrategy(), zipf(0));
+        assertTrue(tinyLfu > lru);
+        assertTrue(lru > random);
+    }
+
+    @Test
+    public void testScanHitRate() {
+        double lru = hitRate(new LinkedLastRecentlyUsedStrategy(), zipf(1000));
+        double random = hitRate(new RandomStrategy(), zipf(1000));
+        double tinyLfu = hitRate(new WindowTinyLfuStrategy(), zipf(1000));
+        assertTrue(tinyLfu > lru);
+        assertTrue(lru > random);
+    }
+
+    @Test
+    public void testEvictionKeepsLimit() {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.LIMIT, String.valueOf(10));
+        MemoryCache<Object, Object> cache = new MemoryCache<>(props, new WindowTinyLfuStrategy());
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(i % 30, i);
+            cache.get(i % 7);
+        }
+        assertTrue(cache.size() == 10);
+        for (int i = 0; i < 7; i++) {
+            assertTrue(cache.containsKey(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testWeightLimit() {
+        // a cache bounded by weight has no entry limit to size the strategy by
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.WEIGHT_LIMIT, String.valueOf(10));
+        MemoryCache<Object, Object> cache = new MemoryCache<>(props, new WindowTinyLfuStrategy());
+        cache.setWeigher(Weighers.SINGLETON);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(i % 30, i);
+            cache.get(i % 7);
+        }
+        assertTrue(cache.size() == 10);
+
+        // the segments follow the number of entries, so the policy is not plain LRU
+        double lru = hitRate(new LinkedLastRecentlyUsedStrategy(), zipf(0));
+        double tinyLfu = hitRate(new WindowTinyLfuStrategy(), zipf(0));
+        double weighted = weightedHitRate(new WindowTinyLfuStrategy(), zipf(0));
+        assertTrue(weighted > lru);
+        assertTrue(weighted > tinyLfu * 0.95);
+    }
+
+    @Test
+    public void testConcurrentReads() throws InterruptedException {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.LIMIT, String.valueOf(CAPACITY));
+        final MemoryCache<Integer, Integer> cache = new MemoryCache<>(props, new WindowTinyLfuStrategy());
+        final int[] trace = zipf(0);
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        final int share = OPERATIONS / threads.length;
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t * share;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = offset; i < offset + share; i++) {
+                            if (cache.get(trace[i]) == null) {
+                                cache.put(trace[i], trace[i]);
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.get() == 0);
+        assertTrue(cache.size() == CAPACITY);
+        // the most frequent keys survive the buffered accesses
+        for (int key = 0; key < 10; key++) {
+            assertTrue(cache.containsKey(key));
+        }
+    }
+
+    private double hitRate(Strategy strategy, int[] trace) {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.LIMIT, String.valueOf(CAPACITY));
+        return hitRate(new MemoryCache<Integer, Integer>(props, strategy), trace);
+    }
+
+    /**
+     * Hit rate of a cache holding {@code CAPACITY} entries of weight one, which has no entry limit.
+     */
+    private double weightedHitRate(Strategy strategy, int[] trace) {
+        Properties props = new Properties();
+        props.setProperty(MemoryCache.WEIGHT_LIMIT, String.valueOf(CAPACITY));
+        MemoryCache<Integer, Integer> cache = new MemoryCache<>(props, strategy);
+        cache.setWeigher(Weighers.SINGLETON);
+        return hitRate(cache, trace);
+    }
+
+    private double hitRate(MemoryCache<Integer, Integer> cache, int[] trace) {
+        int hits = 0;
+        for (int key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+    /**
+     * Zipfian trace over {@code KEYS} keys; every {@code scanEvery} operations a scan of unique keys is inserted.
+     */
+    private int[] zipf(int scanEvery) {
+        double[] cdf = new double[KEYS];
+        double sum = 0;
+        for (int i = 0; i < KEYS; i++) {
+            sum += 1 / Math.pow(i + 1, 0.9);
+            cdf[i] = sum;
+        }
+        Random random = new Random(7);
+        int[] trace = new int[OPERATIONS];
+        int scanKey = KEYS;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (scanEvery > 0 && i % scanEvery < CAPACITY / 2) {
+                trace[i] = scanKey++;
+            } else {
+                int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+                trace[i] = index < 0 ? -index - 1 : index;
+            }
+        }
+        return trace;
+    }
+}